@@ -0,0 +1,53 @@
+package bench;
+
+import Graph.UnorientedGraph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coloration gloutonne d'un graphe d'interférence : chaque registre est vivant en même temps
+ * que les {@link #LIVE} registres suivants, comme dans une suite d'instructions.
+ * La coloration mémorise les couleurs dans le graphe, qui est donc reconstruit à chaque appel.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ColoringBenchmark {
+    private static final int LIVE = 8;
+
+    @Param({"10", "100", "1000", "10000", "100000"})
+    public int statements;
+
+    private UnorientedGraph<Integer> graph;
+
+    @Setup(Level.Invocation)
+    public void setUp() {
+        graph = new UnorientedGraph<>();
+        for (int register = 0; register < statements; register++) {
+            graph.addVertex(register);
+            for (int other = Math.max(0, register - LIVE); other < register; other++) {
+                graph.addEdge(other, register);
+            }
+        }
+    }
+
+    @Benchmark
+    public int color() {
+        return graph.color();
+    }
+}
@@ -0,0 +1,108 @@
+package bench;
+
+import Asm.Program;
+import Type.Type;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.tree.ParseTreeVisitor;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+
+/**
+ * Accès aux classes du compilateur depuis les benchmarks.
+ * <p>
+ * Les classes générées par ANTLR et les visiteurs sont dans le paquetage par défaut, que JMH
+ * ne sait pas utiliser et qu'un paquetage nommé ne peut pas importer : elles sont donc chargées
+ * par réflexion une fois pour toutes, puis manipulées à travers les types du runtime ANTLR.
+ */
+final class Compilers {
+    private static final Constructor<? extends Lexer> LEXER;
+    private static final Constructor<? extends Parser> PARSER;
+    private static final Method PARSER_MAIN;
+    private static final Constructor<?> TYPER;
+    private static final Method TYPER_TYPED_TREE;
+    private static final Constructor<?> CODE_GENERATOR;
+
+    static {
+        try {
+            LEXER = Class.forName("grammarTCLLexer").asSubclass(Lexer.class).getConstructor(CharStream.class);
+            Class<? extends Parser> parser = Class.forName("grammarTCLParser").asSubclass(Parser.class);
+            PARSER = parser.getConstructor(TokenStream.class);
+            PARSER_MAIN = parser.getMethod("main");
+            TYPER = Class.forName("TyperVisitor").getConstructor();
+            TYPER_TYPED_TREE = TYPER.getDeclaringClass().getMethod("getTypedTree");
+            CODE_GENERATOR = Class.forName("CodeGenerator").getConstructor(Class.forName("TypedTree"));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private Compilers() {
+    }
+
+    /**
+     * Crée le lexer TCL.
+     * @param input code source
+     * @return lexer
+     */
+    static Lexer lexer(CharStream input) {
+        return newInstance(LEXER, input);
+    }
+
+    /**
+     * Analyse un flux de tokens avec la règle main.
+     * @param tokens flux de tokens
+     * @return racine de l'arbre syntaxique
+     */
+    static ParserRuleContext parse(TokenStream tokens) {
+        try {
+            return (ParserRuleContext) PARSER_MAIN.invoke(newInstance(PARSER, tokens));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Crée un TyperVisitor.
+     * @return visiteur de typage
+     */
+    @SuppressWarnings("unchecked")
+    static ParseTreeVisitor<Type> typer() {
+        return (ParseTreeVisitor<Type>) newInstance(TYPER);
+    }
+
+    /**
+     * Résultats d'un typage, à transmettre au générateur de code.
+     * @param typer visiteur de typage qui a visité l'arbre
+     * @return TypedTree du typage
+     */
+    static Object typedTree(ParseTreeVisitor<Type> typer) {
+        try {
+            return TYPER_TYPED_TREE.invoke(typer);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Crée un CodeGenerator qui utilise les résultats du typage, comme le fait le compilateur.
+     * @param typedTree résultats du typage de l'arbre (voir {@link #typedTree})
+     * @return générateur de code
+     */
+    @SuppressWarnings("unchecked")
+    static ParseTreeVisitor<Program> codeGenerator(Object typedTree) {
+        return (ParseTreeVisitor<Program>) newInstance(CODE_GENERATOR, typedTree);
+    }
+
+    private static <T> T newInstance(Constructor<T> constructor, Object... args) {
+        try {
+            return constructor.newInstance(args);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package bench;
+
+import Asm.Program;
+import Type.Type;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ListTokenSource;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.tree.ParseTreeVisitor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chaque phase du compilateur mesurée isolément : les entrées de chaque phase
+ * (tokens, arbre, programme) sont calculées une fois dans {@link #setUp()}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PipelineBenchmark {
+    @Param({"10", "100", "1000", "10000", "100000"})
+    public int statements;
+
+    private String source;
+    private List<? extends Token> tokens;
+    private ParserRuleContext tree;
+    private Object typedTree;
+    private Program program;
+
+    @Setup
+    public void setUp() {
+        source = Sources.program(statements);
+        CommonTokenStream stream = new CommonTokenStream(Compilers.lexer(CharStreams.fromString(source)));
+        stream.fill();
+        tokens = stream.getTokens();
+        tree = Compilers.parse(new CommonTokenStream(new ListTokenSource(tokens)));
+        ParseTreeVisitor<Type> typer = Compilers.typer();
+        typer.visit(tree);
+        typedTree = Compilers.typedTree(typer);
+        program = Compilers.codeGenerator(typedTree).visit(tree);
+    }
+
+    @Benchmark
+    public List<? extends Token> lex() {
+        return Compilers.lexer(CharStreams.fromString(source)).getAllTokens();
+    }
+
+    @Benchmark
+    public ParserRuleContext parse() {
+        return Compilers.parse(new CommonTokenStream(new ListTokenSource(tokens)));
+    }
+
+    @Benchmark
+    public Object type() {
+        return Compilers.typer().visit(tree);
+    }
+
+    @Benchmark
+    public Program generate() {
+        return Compilers.codeGenerator(typedTree).visit(tree);
+    }
+
+    @Benchmark
+    public String programToString() {
+        return program.toString();
+    }
+}
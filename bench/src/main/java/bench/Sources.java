@@ -0,0 +1,30 @@
+package bench;
+
+import Workload.Generator;
+
+/**
+ * Programmes TCL synthétiques de taille donnée pour les benchmarks.
+ */
+final class Sources {
+    private static final long SEED = 42;
+
+    private Sources() {
+    }
+
+    /**
+     * Construit un main de {@code statements} instructions avec le générateur de corpus :
+     * moitié déclarations, moitié affectations, sans autre fonction ni imbrication,
+     * pour que la taille du programme soit exactement le paramètre du benchmark.
+     *
+     * @param statements nombre d'instructions
+     * @return code source
+     */
+    static String program(int statements) {
+        Generator generator = new Generator(SEED);
+        generator.setFunctions(0);
+        generator.setDepth(0);
+        generator.setVariablesPerScope(statements / 2);
+        generator.setStatementsPerBlock(statements - statements / 2);
+        return generator.generate();
+    }
+}
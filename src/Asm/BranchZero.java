@@ -0,0 +1,88 @@
+package Asm;
+import java.io.IOException;
+/**
+ * Saut vers un label si un registre est nul (condition fausse).
+ */
+public class BranchZero extends Instruction {
+    private int reg;
+    private String address;
+
+
+    /**
+     * Getter du registre testé
+     * @return int numéro du registre testé
+     */
+    public int getReg() {
+        return reg;
+    }
+
+
+    /**
+     * Setter du registre testé
+     * @param reg numéro du registre testé
+     */
+    public void setReg(int reg) {
+        this.reg = reg;
+    }
+
+
+    /**
+     * Getter de l'adresse de saut
+     * @return String label sauté si le registre est nul
+     */
+    public String getAddress() {
+        return address;
+    }
+
+
+    /**
+     * Setter de l'adresse de saut
+     * @param address label sauté si le registre est nul
+     */
+    public void setAddress(String address) {
+        this.address = address;
+    }
+
+    /**
+     * Constructeur
+     * @param label label de l'instruction
+     * @param reg numéro du registre testé
+     * @param address label sauté si le registre est nul
+     */
+    public BranchZero(String label, int reg, String address) {
+        super(label, "JEQ");
+        this.reg = reg;
+        this.address = address;
+    }
+
+    /**
+     * Constructeur sans label
+     * @param reg numéro du registre testé
+     * @param address label sauté si le registre est nul
+     */
+    public BranchZero(int reg, String address) {
+        super("", "JEQ");
+        this.reg = reg;
+        this.address = address;
+    }
+
+
+    /**
+     * Ecrit le texte de l'instruction sans chaîne intermédiaire
+     * @param out destination du texte
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    public void emit(Appendable out) throws IOException {
+        emitHeader(out);
+        appendRegister(out, reg);
+        out.append(" 0 ").append(address).append('\n');
+    }
+
+    /**
+     * Conversion en String
+     * @return String texte de l'instruction
+     */
+    public String toString() {
+        return emitToString();
+    }
+}
@@ -1,4 +1,5 @@
 package Asm;
+import java.io.IOException;
 public class CondJump extends Instruction {
     public static enum Op { JINF, JEQU, JSUP, JNEQ, JIEQ, JSEQ };
     private int sr1;
@@ -89,12 +90,24 @@ public class CondJump extends Instruction {
     }
 
     
+    /**
+     * Ecrit le texte de l'instruction sans chaîne intermédiaire
+     * @param out destination du texte
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    public void emit(Appendable out) throws IOException {
+        emitHeader(out);
+        appendRegister(out, sr1);
+        appendRegister(out, sr2);
+        out.append(' ').append(address).append('\n');
+    }
+
     /** 
      * Conversion en String
      * @return String texte de l'instruction
      */
     public String toString() {
-        return this.label+ (this.label==""?"":": ") + this.name + " R" + sr1 + " R" + sr2 + " " + address + "\n";
+        return emitToString();
     }
 
     
@@ -0,0 +1,29 @@
+package Asm;
+
+/**
+ * Destination du code généré, alimentée au fur et à mesure de la génération.
+ * Le générateur lui transmet chaque fonction dès qu'elle est terminée, ce qui permet
+ * de libérer ses instructions sans attendre la fin du programme.
+ */
+public interface Emitter {
+
+    /**
+     * Ajoute un morceau de programme à la suite de ce qui a déjà été émis.
+     * @param program instructions à émettre
+     */
+    public void emit(Program program);
+
+    /**
+     * Ajoute un programme compact à la suite de ce qui a déjà été émis. Par défaut,
+     * ses instructions sont recréées sous forme d'objets.
+     * @param program instructions à émettre
+     */
+    public default void emit(PackedProgram program) {
+        emit(program.toProgram());
+    }
+
+    /**
+     * Transmet à la destination tout ce qui a été émis jusqu'ici.
+     */
+    public void flush();
+}
@@ -0,0 +1,44 @@
+package Asm;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+/**
+ * Entrée d'une fonction : le label portant son nom, suivi du chargement de chaque paramètre
+ * dans le registre de même rang.
+ */
+public class FunctionEntry extends Label {
+    private final List<String> parameters;
+
+    /**
+     * Constructeur
+     * @param name nom de la fonction
+     * @param parameters noms des paramètres, dans l'ordre
+     */
+    public FunctionEntry(String name, List<String> parameters) {
+        super(name);
+        this.parameters = Collections.unmodifiableList(new ArrayList<>(parameters));
+    }
+
+    /**
+     * Getter des paramètres
+     * @return noms des paramètres, le i-ème chargé dans le registre i
+     */
+    public List<String> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Ecrit le label de la fonction puis le chargement des paramètres
+     * @param out destination du texte
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    public void emit(Appendable out) throws IOException {
+        super.emit(out);
+        for (int i = 0; i < parameters.size(); i++) {
+            out.append("LD");
+            appendRegister(out, i);
+            out.append(' ').append(parameters.get(i)).append('\n');
+        }
+    }
+}
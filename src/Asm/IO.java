@@ -1,4 +1,5 @@
 package Asm;
+import java.io.IOException;
 public class IO extends Instruction {
     public static enum Op { IN, OUT, READ, PRINT };
     private int reg;
@@ -40,11 +41,22 @@ public class IO extends Instruction {
         this.reg = reg;
     }
 
+    /**
+     * Ecrit le texte de l'instruction sans chaîne intermédiaire
+     * @param out destination du texte
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    public void emit(Appendable out) throws IOException {
+        emitHeader(out);
+        appendRegister(out, reg);
+        out.append('\n');
+    }
+
     /** 
      * Conversion en String
      * @return String texte de l'instruction
      */
     public String toString() {
-        return this.label+ (this.label==""?"":": ") + this.name + " R" + reg + "\n";
+        return emitToString();
     } 
 }
@@ -1,4 +1,7 @@
 package Asm;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
 public abstract class Instruction {
     protected String label;
     protected String name;
@@ -45,4 +48,78 @@ public abstract class Instruction {
     public void setName(String name) {
         this.name = name;
     }
+
+    /**
+     * Ecrit le texte de l'instruction, saut de ligne compris. Les sous-classes écrivent
+     * directement le label, l'opération et les opérandes, sans chaîne intermédiaire ;
+     * par défaut, le texte de toString est recopié.
+     * @param out destination du texte
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    public void emit(Appendable out) throws IOException {
+        out.append(toString());
+    }
+
+    /**
+     * Ecrit le label (suivi de ": " s'il y en a un) puis l'opération.
+     * @param out destination du texte
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    protected void emitHeader(Appendable out) throws IOException {
+        out.append(label);
+        if (label != "") { // Même test que les toString : "" est la chaîne partagée des constructeurs
+            out.append(": ");
+        }
+        out.append(name);
+    }
+
+    /**
+     * Texte écrit par {@link #emit(Appendable)}, pour le toString des sous-classes.
+     * @return String texte de l'instruction
+     */
+    protected String emitToString() {
+        StringBuilder sb = new StringBuilder(24);
+        try {
+            emit(sb);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // Impossible avec un StringBuilder
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Ecrit un registre (" R" suivi de son numéro).
+     * @param out destination du texte
+     * @param register numéro du registre
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    static void appendRegister(Appendable out, int register) throws IOException {
+        out.append(" R");
+        appendInt(out, register);
+    }
+
+    /**
+     * Ecrit un entier en décimal, chiffre par chiffre, sans créer de String.
+     * @param out destination du texte
+     * @param value entier à écrire
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    static void appendInt(Appendable out, int value) throws IOException {
+        if (out instanceof StringBuilder) {
+            ((StringBuilder) out).append(value);
+            return;
+        }
+        long remaining = value; // long : -Integer.MIN_VALUE ne tient pas dans un int
+        if (remaining < 0) {
+            out.append('-');
+            remaining = -remaining;
+        }
+        long divisor = 1;
+        while (divisor * 10 <= remaining) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            out.append((char) ('0' + remaining / divisor % 10));
+        }
+    }
 }
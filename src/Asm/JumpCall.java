@@ -1,4 +1,5 @@
 package Asm;
+import java.io.IOException;
 public class JumpCall extends Instruction{
     public static enum Op { JMP, CALL };
     private String address;
@@ -42,11 +43,21 @@ public class JumpCall extends Instruction{
     
     }
 
+    /**
+     * Ecrit le texte de l'instruction sans chaîne intermédiaire
+     * @param out destination du texte
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    public void emit(Appendable out) throws IOException {
+        emitHeader(out);
+        out.append(' ').append(address).append('\n');
+    }
+
     /** 
      * Conversion en String
      * @return String texte de l'instruction
      */
     public String toString() {
-        return this.label+ (this.label==""?"":": ") + this.name + " " + address + "\n";
+        return emitToString();
     } 
 }
@@ -0,0 +1,33 @@
+package Asm;
+import java.io.IOException;
+/**
+ * Pseudo-instruction marquant une position du programme : elle ne produit que son label,
+ * cible des sauts qui le désignent par son nom.
+ */
+public class Label extends Instruction {
+
+    /**
+     * Constructeur
+     * @param name nom du label
+     */
+    public Label(String name) {
+        super(name, "");
+    }
+
+    /**
+     * Ecrit le label seul sur sa ligne
+     * @param out destination du texte
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    public void emit(Appendable out) throws IOException {
+        out.append(label).append(":\n");
+    }
+
+    /**
+     * Conversion en String
+     * @return String texte de l'instruction
+     */
+    public String toString() {
+        return emitToString();
+    }
+}
@@ -1,4 +1,5 @@
 package Asm;
+import java.io.IOException;
 public class Mem extends Instruction{
     public static enum Op { LD, ST };
 
@@ -62,12 +63,24 @@ public class Mem extends Instruction{
         this.address = address;
     }
 
+    /**
+     * Ecrit le texte de l'instruction sans chaîne intermédiaire
+     * @param out destination du texte
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    public void emit(Appendable out) throws IOException {
+        emitHeader(out);
+        appendRegister(out, dest);
+        appendRegister(out, address);
+        out.append('\n');
+    }
+
     /** 
      * Conversion en String
      * @return String texte de l'instruction
      */
     public String toString() {
-        return this.label+ (this.label==""?"":": ") + this.name + " R" + dest + " R" + address + "\n";
+        return emitToString();
     }
     
 }
\ No newline at end of file
@@ -0,0 +1,379 @@
+package Asm;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Fichier objet : encodage binaire d'un programme, lu sans analyse de texte.
+ * <p>
+ * Le fichier (entiers en big-endian) contient, à la suite :
+ * <ul>
+ * <li>un en-tête de 32 octets : "TCLO", version, nombre d'instructions, nombre de symboles,
+ * nombre d'entiers des listes de paramètres, taille de la table des chaînes, taille de la
+ * section de débogage et taille des opérandes (2 ou 4 octets) ;</li>
+ * <li>les instructions, toutes de la même taille : un entier portant la sorte (4 bits),
+ * l'opération (4 bits) et le numéro du label (24 bits, 0 si aucun, sinon symbole + 1), puis
+ * trois opérandes (registres, constante, numéro de symbole d'une adresse de saut, ou début
+ * et taille d'une liste de paramètres). Les opérandes tiennent sur 2 octets quand tous ceux
+ * du programme le permettent, soit 10 octets par instruction, sur 4 octets sinon ;</li>
+ * <li>les symboles (labels, adresses, paramètres) : le début de chacun dans la table des
+ * chaînes, plus la fin du dernier, puis la table des chaînes en UTF-8 ;</li>
+ * <li>les listes de paramètres des entrées de fonction, en numéros de symboles ;</li>
+ * <li>une section de débogage facultative : le nom du fichier source, en UTF-8.</li>
+ * </ul>
+ * Les instructions ayant toutes la même taille, la i-ème se lit directement. Un fichier
+ * ouvert avec {@link #open(Path)} est projeté en mémoire : rien n'est décodé au chargement,
+ * chaque instruction ou symbole l'est quand on le demande.
+ */
+public class ObjectFile {
+    private static final int MAGIC = 0x54434C4F; // "TCLO"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int LABEL_MASK = 0xffffff;
+    private static final PackedProgram.Kind[] KINDS = PackedProgram.Kind.values();
+    private static final UAL.Op[] UAL_OPS = UAL.Op.values();
+    private static final UALi.Op[] UALI_OPS = UALi.Op.values();
+    private static final Mem.Op[] MEM_OPS = Mem.Op.values();
+    private static final IO.Op[] IO_OPS = IO.Op.values();
+    private static final CondJump.Op[] COND_JUMP_OPS = CondJump.Op.values();
+    private static final JumpCall.Op[] JUMP_CALL_OPS = JumpCall.Op.values();
+
+    private final ByteBuffer buffer;
+    private final int size;
+    private final int operandSize;
+    private final int recordSize;
+    private final int symbolCount;
+    private final int symbolsOffset;
+    private final int poolOffset;
+    private final int listsOffset;
+    private final int debugOffset;
+    private final int debugLength;
+    private final String[] symbols;
+
+    /**
+     * Constructeur
+     * @param buffer contenu du fichier objet
+     * @throws IOException si le contenu n'est pas un fichier objet valide
+     */
+    public ObjectFile(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Fichier objet invalide");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Version de fichier objet non prise en charge : " + buffer.getInt(4));
+        }
+        size = buffer.getInt(8);
+        symbolCount = buffer.getInt(12);
+        int listLength = buffer.getInt(16);
+        int poolLength = buffer.getInt(20);
+        debugLength = buffer.getInt(24);
+        operandSize = buffer.getInt(28);
+        if (operandSize != 2 && operandSize != 4) {
+            throw new IOException("Taille d'opérande invalide : " + operandSize);
+        }
+        recordSize = 4 + 3 * operandSize;
+        symbolsOffset = HEADER_SIZE + size * recordSize;
+        poolOffset = symbolsOffset + (symbolCount + 1) * 4;
+        listsOffset = poolOffset + poolLength;
+        debugOffset = listsOffset + listLength * 4;
+        if (size < 0 || symbolCount < 0 || debugOffset + debugLength != buffer.capacity()) {
+            throw new IOException("Fichier objet tronqué ou corrompu");
+        }
+        symbols = new String[symbolCount];
+    }
+
+    /**
+     * Projette un fichier objet en mémoire, sans le décoder.
+     * @param path fichier objet
+     * @return le fichier objet
+     * @throws IOException en cas d'erreur de lecture ou si le fichier n'est pas valide
+     */
+    public static ObjectFile open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new ObjectFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Getter du nombre d'instructions
+     * @return nombre d'instructions
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Getter du fichier source
+     * @return nom du fichier source (section de débogage), ou null s'il n'a pas été enregistré
+     */
+    public String getSourceName() {
+        if (debugLength == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[debugLength];
+        buffer.get(debugOffset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Getter de la sorte d'une instruction
+     * @param index rang de l'instruction
+     * @return sorte d'instruction
+     */
+    public PackedProgram.Kind getKind(int index) {
+        return KINDS[buffer.getInt(record(index)) >>> 28];
+    }
+
+    /**
+     * Getter du label d'une instruction
+     * @param index rang de l'instruction
+     * @return label ("" si aucun)
+     */
+    public String getLabel(int index) {
+        int label = buffer.getInt(record(index)) & LABEL_MASK;
+        return label == 0 ? "" : getSymbol(label - 1);
+    }
+
+    /**
+     * Décode une instruction.
+     * @param index rang de l'instruction
+     * @return l'instruction
+     */
+    public Instruction getInstruction(int index) {
+        int offset = record(index);
+        int header = buffer.getInt(offset);
+        int op = (header >>> 24) & 0xf;
+        String label = (header & LABEL_MASK) == 0 ? "" : getSymbol((header & LABEL_MASK) - 1);
+        int a = operand(offset + 4);
+        int b = operand(offset + 4 + operandSize);
+        int c = operand(offset + 4 + 2 * operandSize);
+        switch (KINDS[header >>> 28]) {
+            case UAL: return new UAL(label, UAL_OPS[op], a, b, c);
+            case UALI: return new UALi(label, UALI_OPS[op], a, b, c);
+            case MEM: return new Mem(label, MEM_OPS[op], a, b);
+            case IO: return new IO(label, IO_OPS[op], a);
+            case COND_JUMP: return new CondJump(label, COND_JUMP_OPS[op], a, b, getSymbol(c));
+            case JUMP_CALL: return new JumpCall(label, JUMP_CALL_OPS[op], getSymbol(a));
+            case RET: return a >= 0 ? new Ret(label, a) : new Ret(label);
+            case STOP: return new Stop(label);
+            case LABEL: return new Label(label);
+            case BRANCH_ZERO: return new BranchZero(label, a, getSymbol(b));
+            case FUNCTION_ENTRY:
+                List<String> parameters = new ArrayList<>(b);
+                for (int i = 0; i < b; i++) {
+                    parameters.add(getSymbol(buffer.getInt(listsOffset + (a + i) * 4)));
+                }
+                return new FunctionEntry(label, parameters);
+            default:
+                throw new IllegalStateException("Sorte d'instruction inconnue à l'instruction " + index);
+        }
+    }
+
+    /**
+     * Décode un symbole, une seule fois.
+     * @param index numéro du symbole
+     * @return le symbole
+     */
+    public String getSymbol(int index) {
+        String symbol = symbols[index];
+        if (symbol == null) {
+            int start = buffer.getInt(symbolsOffset + index * 4);
+            int end = buffer.getInt(symbolsOffset + (index + 1) * 4);
+            byte[] bytes = new byte[end - start];
+            buffer.get(poolOffset + start, bytes);
+            symbol = new String(bytes, StandardCharsets.UTF_8);
+            symbols[index] = symbol; // Course bénigne : deux threads décodent la même chaîne
+        }
+        return symbol;
+    }
+
+    /**
+     * Décode tout le programme.
+     * @return programme équivalent
+     */
+    public Program toProgram() {
+        Program program = new Program();
+        for (int i = 0; i < size; i++) {
+            program.addInstruction(getInstruction(i));
+        }
+        return program;
+    }
+
+    /**
+     * Ecrit le texte assembleur du programme, identique à celui du programme d'origine.
+     * @param out destination du texte
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    public void emit(Appendable out) throws IOException {
+        for (int i = 0; i < size; i++) {
+            getInstruction(i).emit(out);
+        }
+    }
+
+    private int record(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Instruction " + index + " sur " + size);
+        }
+        return HEADER_SIZE + index * recordSize;
+    }
+
+    private int operand(int offset) {
+        return operandSize == 2 ? buffer.getShort(offset) : buffer.getInt(offset);
+    }
+
+    /**
+     * Ecrit un programme dans un fichier objet.
+     * @param program programme à écrire
+     * @param sourceName nom du fichier source, enregistré dans la section de débogage (null pour l'omettre)
+     * @param output flux du fichier objet, vidé mais pas fermé
+     * @throws IOException en cas d'erreur d'écriture
+     * @throws IllegalArgumentException si une instruction n'a pas d'encodage binaire
+     */
+    public static void write(Program program, String sourceName, OutputStream output) throws IOException {
+        PackedProgram packed = new PackedProgram();
+        packed.addInstructions(program);
+        write(packed, sourceName, output);
+    }
+
+    /**
+     * Ecrit un programme compact dans un fichier objet. Un premier parcours construit la table
+     * des symboles et les instructions, pour choisir la taille des opérandes avant d'écrire.
+     * @param program programme à écrire
+     * @param sourceName nom du fichier source, enregistré dans la section de débogage (null pour l'omettre)
+     * @param output flux du fichier objet, vidé mais pas fermé
+     * @throws IOException en cas d'erreur d'écriture
+     * @throws IllegalArgumentException si une instruction n'a pas d'encodage binaire
+     */
+    public static void write(PackedProgram program, String sourceName, OutputStream output) throws IOException {
+        List<String> symbols = new ArrayList<>();
+        HashMap<String, Integer> symbolIndex = new HashMap<>();
+        List<Integer> lists = new ArrayList<>();
+        int[] records = new int[program.size() * 4];
+        boolean wide = false;
+        int position = 0;
+        PackedProgram.Cursor cursor = program.cursor();
+        while (cursor.next()) {
+            PackedProgram.Kind kind = cursor.getKind();
+            int a = 0, b = 0, c = 0;
+            switch (kind) {
+                case UAL:
+                    a = cursor.getRegister1(); b = cursor.getRegister2(); c = cursor.getRegister3();
+                    break;
+                case UALI:
+                    a = cursor.getRegister1(); b = cursor.getRegister2(); c = cursor.getImm();
+                    break;
+                case MEM:
+                    a = cursor.getRegister1(); b = cursor.getRegister2();
+                    break;
+                case IO:
+                case RET:
+                    a = cursor.getRegister1();
+                    break;
+                case COND_JUMP:
+                    a = cursor.getRegister1(); b = cursor.getRegister2();
+                    c = symbol(cursor.getAddress(), symbols, symbolIndex);
+                    break;
+                case JUMP_CALL:
+                    a = symbol(cursor.getAddress(), symbols, symbolIndex);
+                    break;
+                case BRANCH_ZERO:
+                    a = cursor.getRegister1();
+                    b = symbol(cursor.getAddress(), symbols, symbolIndex);
+                    break;
+                case FUNCTION_ENTRY:
+                    List<String> parameters = cursor.getParameters();
+                    a = lists.size();
+                    b = parameters.size();
+                    for (String parameter : parameters) {
+                        lists.add(symbol(parameter, symbols, symbolIndex));
+                    }
+                    break;
+                case STOP:
+                case LABEL:
+                    break;
+                default:
+                    throw new IllegalArgumentException("Instruction sans encodage binaire : " + cursor.toInstruction().getClass().getName());
+            }
+            String label = cursor.getLabel();
+            int labelNumber = label == "" ? 0 : symbol(label, symbols, symbolIndex) + 1;
+            if (labelNumber > LABEL_MASK) {
+                throw new IllegalArgumentException("Trop de symboles pour un fichier objet : " + labelNumber);
+            }
+            records[position++] = kind.ordinal() << 28 | cursor.getOpcode() << 24 | labelNumber;
+            records[position++] = a;
+            records[position++] = b;
+            records[position++] = c;
+            wide |= a != (short) a || b != (short) b || c != (short) c;
+        }
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output, 1 << 16));
+        List<byte[]> encoded = new ArrayList<>(symbols.size());
+        int poolLength = 0;
+        for (String symbol : symbols) {
+            byte[] bytes = String.valueOf(symbol).getBytes(StandardCharsets.UTF_8);
+            encoded.add(bytes);
+            poolLength += bytes.length;
+        }
+        byte[] debug = sourceName == null ? new byte[0] : sourceName.getBytes(StandardCharsets.UTF_8);
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(program.size());
+        out.writeInt(symbols.size());
+        out.writeInt(lists.size());
+        out.writeInt(poolLength);
+        out.writeInt(debug.length);
+        out.writeInt(wide ? 4 : 2);
+        for (int i = 0; i < records.length; i += 4) {
+            out.writeInt(records[i]);
+            for (int j = 1; j < 4; j++) {
+                if (wide) {
+                    out.writeInt(records[i + j]);
+                } else {
+                    out.writeShort(records[i + j]);
+                }
+            }
+        }
+        int offset = 0;
+        for (byte[] bytes : encoded) {
+            out.writeInt(offset);
+            offset += bytes.length;
+        }
+        out.writeInt(offset);
+        for (byte[] bytes : encoded) {
+            out.write(bytes);
+        }
+        for (int entry : lists) {
+            out.writeInt(entry);
+        }
+        out.write(debug);
+        out.flush();
+    }
+
+    /**
+     * Numéro d'un symbole, ajouté à la table si besoin.
+     * @param symbol label, adresse ou paramètre
+     * @param symbols symboles dans l'ordre de leur numéro
+     * @param symbolIndex numéro de chaque symbole
+     * @return numéro du symbole
+     */
+    private static int symbol(String symbol, List<String> symbols, HashMap<String, Integer> symbolIndex) {
+        Integer index = symbolIndex.get(symbol);
+        if (index == null) {
+            index = symbols.size();
+            symbols.add(symbol);
+            symbolIndex.put(symbol, index);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,39 @@
+package Asm;
+
+/**
+ * Emetteur qui range le code émis dans un programme compact : le programme complet
+ * est conservé en mémoire à quelques octets par instruction.
+ */
+public class PackedEmitter implements Emitter {
+    private final PackedProgram program = new PackedProgram();
+
+    /**
+     * Ajoute les instructions à la suite du programme compact.
+     * @param program instructions à ajouter
+     */
+    public void emit(Program program) {
+        this.program.addInstructions(program);
+    }
+
+    /**
+     * Ajoute les instructions d'un programme compact à la suite du programme.
+     * @param program instructions à ajouter
+     */
+    public void emit(PackedProgram program) {
+        this.program.addInstructions(program);
+    }
+
+    /**
+     * Rien à transmettre : le programme reste en mémoire.
+     */
+    public void flush() {
+    }
+
+    /**
+     * Getter du programme émis
+     * @return programme compact contenant tout ce qui a été émis
+     */
+    public PackedProgram getProgram() {
+        return program;
+    }
+}
@@ -0,0 +1,670 @@
+package Asm;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Programme compact : les instructions sont codées à la suite dans un seul tableau d'octets
+ * au lieu d'être des objets.
+ * <p>
+ * Chaque instruction commence par un octet d'en-tête (sorte d'instruction sur les 4 bits de
+ * poids fort, opération sur les 4 bits de poids faible), suivi du numéro de son label puis de
+ * ses opérandes, tous en entiers de taille variable (7 bits par octet, les constantes
+ * immédiates en zigzag pour que les petites valeurs négatives restent courtes). Les labels
+ * et les adresses de saut sont rangés une seule fois dans une table de chaînes et désignés
+ * par leur numéro. Une instruction UAL sur des registres inférieurs à 128 tient ainsi en
+ * 5 octets, contre une quarantaine pour l'objet équivalent et sa référence dans la liste.
+ * <p>
+ * Les instructions ne sont pas adressables une à une : elles se lisent dans l'ordre avec
+ * un {@link Cursor}. Les instructions d'une autre sous-classe d'{@link Instruction} sont
+ * conservées telles quelles dans une table à part.
+ */
+public class PackedProgram {
+    /**
+     * Sortes d'instructions codées.
+     */
+    public static enum Kind { UAL, UALI, MEM, IO, COND_JUMP, JUMP_CALL, RET, STOP, LABEL, BRANCH_ZERO, FUNCTION_ENTRY, RAW };
+
+    private static final Kind[] KINDS = Kind.values();
+    private static final UAL.Op[] UAL_OPS = UAL.Op.values();
+    private static final UALi.Op[] UALI_OPS = UALi.Op.values();
+    private static final Mem.Op[] MEM_OPS = Mem.Op.values();
+    private static final IO.Op[] IO_OPS = IO.Op.values();
+    private static final CondJump.Op[] COND_JUMP_OPS = CondJump.Op.values();
+    private static final JumpCall.Op[] JUMP_CALL_OPS = JumpCall.Op.values();
+
+    private byte[] code = new byte[64];
+    private int length = 0;
+    private int size = 0;
+    private final ArrayList<String> strings = new ArrayList<>();
+    private final HashMap<String, Integer> stringIndex = new HashMap<>();
+    private final ArrayList<Instruction> raw = new ArrayList<>();
+
+    /**
+     * Getter du nombre d'instructions
+     * @return nombre d'instructions
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Getter de la taille du code
+     * @return nombre d'octets utilisés par les instructions (hors table des labels)
+     */
+    public int getCodeSize() {
+        return length;
+    }
+
+    /**
+     * Ajoute une instruction UAL.
+     * @param label label de l'instruction ("" si aucun)
+     * @param op type d'opération
+     * @param dest numéro du registre de destination
+     * @param sr1 numéro du premier registre source
+     * @param sr2 numéro du second registre source
+     */
+    public void addUAL(String label, UAL.Op op, int dest, int sr1, int sr2) {
+        header(Kind.UAL, op.ordinal(), label);
+        writeInt(dest);
+        writeInt(sr1);
+        writeInt(sr2);
+    }
+
+    /**
+     * Ajoute une instruction UAL avec constante immédiate.
+     * @param label label de l'instruction ("" si aucun)
+     * @param op type d'opération
+     * @param dest numéro du registre de destination
+     * @param sr numéro du registre source
+     * @param imm constante immédiate
+     */
+    public void addUALi(String label, UALi.Op op, int dest, int sr, int imm) {
+        header(Kind.UALI, op.ordinal(), label);
+        writeInt(dest);
+        writeInt(sr);
+        writeInt((imm << 1) ^ (imm >> 31)); // Zigzag
+    }
+
+    /**
+     * Ajoute un accès mémoire.
+     * @param label label de l'instruction ("" si aucun)
+     * @param op type d'opération
+     * @param dest numéro du registre à stocker ou de destination
+     * @param address numéro du registre d'adresse
+     */
+    public void addMem(String label, Mem.Op op, int dest, int address) {
+        header(Kind.MEM, op.ordinal(), label);
+        writeInt(dest);
+        writeInt(address);
+    }
+
+    /**
+     * Ajoute une entrée/sortie.
+     * @param label label de l'instruction ("" si aucun)
+     * @param op type d'opération
+     * @param reg numéro de registre
+     */
+    public void addIO(String label, IO.Op op, int reg) {
+        header(Kind.IO, op.ordinal(), label);
+        writeInt(reg);
+    }
+
+    /**
+     * Ajoute un saut conditionnel.
+     * @param label label de l'instruction ("" si aucun)
+     * @param op type d'opération
+     * @param sr1 numéro du premier registre source
+     * @param sr2 numéro du second registre source
+     * @param address adresse de saut
+     */
+    public void addCondJump(String label, CondJump.Op op, int sr1, int sr2, String address) {
+        header(Kind.COND_JUMP, op.ordinal(), label);
+        writeInt(sr1);
+        writeInt(sr2);
+        writeInt(intern(address));
+    }
+
+    /**
+     * Ajoute un saut ou un appel.
+     * @param label label de l'instruction ("" si aucun)
+     * @param op type d'opération
+     * @param address adresse de saut
+     */
+    public void addJumpCall(String label, JumpCall.Op op, String address) {
+        header(Kind.JUMP_CALL, op.ordinal(), label);
+        writeInt(intern(address));
+    }
+
+    /**
+     * Ajoute un retour de fonction.
+     * @param label label de l'instruction ("" si aucun)
+     */
+    public void addRet(String label) {
+        header(Kind.RET, 0, label);
+    }
+
+    /**
+     * Ajoute un retour de la valeur d'un registre.
+     * @param label label de l'instruction ("" si aucun)
+     * @param reg numéro du registre retourné
+     */
+    public void addRet(String label, int reg) {
+        header(Kind.RET, 1, label);
+        writeInt(reg);
+    }
+
+    /**
+     * Ajoute un label seul.
+     * @param name nom du label
+     */
+    public void addLabel(String name) {
+        header(Kind.LABEL, 0, name);
+    }
+
+    /**
+     * Ajoute un saut si un registre est nul.
+     * @param label label de l'instruction ("" si aucun)
+     * @param reg numéro du registre testé
+     * @param address adresse de saut
+     */
+    public void addBranchZero(String label, int reg, String address) {
+        header(Kind.BRANCH_ZERO, 0, label);
+        writeInt(reg);
+        writeInt(intern(address));
+    }
+
+    /**
+     * Ajoute l'entrée d'une fonction.
+     * @param name nom de la fonction
+     * @param parameters noms des paramètres, dans l'ordre
+     */
+    public void addFunctionEntry(String name, List<String> parameters) {
+        header(Kind.FUNCTION_ENTRY, 0, name);
+        writeInt(parameters.size());
+        for (String parameter : parameters) {
+            writeInt(intern(parameter));
+        }
+    }
+
+    /**
+     * Ajoute un arrêt du programme.
+     * @param label label de l'instruction ("" si aucun)
+     */
+    public void addStop(String label) {
+        header(Kind.STOP, 0, label);
+    }
+
+    /**
+     * Ajoute une instruction, codée si sa sorte est connue, conservée telle quelle sinon.
+     * @param instruction instruction à ajouter
+     */
+    public void addInstruction(Instruction instruction) {
+        if (instruction instanceof UAL) {
+            UAL ual = (UAL) instruction;
+            addUAL(ual.getLabel(), UAL.Op.valueOf(ual.getName()), ual.getDest(), ual.getSr1(), ual.getSr2());
+        } else if (instruction instanceof UALi) {
+            UALi uali = (UALi) instruction;
+            addUALi(uali.getLabel(), UALi.Op.valueOf(uali.getName()), uali.getDest(), uali.getSr(), uali.getImm());
+        } else if (instruction instanceof Mem) {
+            Mem mem = (Mem) instruction;
+            addMem(mem.getLabel(), Mem.Op.valueOf(mem.getName()), mem.getDest(), mem.getAddress());
+        } else if (instruction instanceof IO) {
+            IO io = (IO) instruction;
+            addIO(io.getLabel(), IO.Op.valueOf(io.getName()), io.getReg());
+        } else if (instruction instanceof CondJump) {
+            CondJump jump = (CondJump) instruction;
+            addCondJump(jump.getLabel(), CondJump.Op.valueOf(jump.getName()), jump.getSr1(), jump.getSr2(), jump.getAddress());
+        } else if (instruction instanceof JumpCall) {
+            JumpCall jump = (JumpCall) instruction;
+            addJumpCall(jump.getLabel(), JumpCall.Op.valueOf(jump.getName()), jump.getAddress());
+        } else if (instruction instanceof Ret) {
+            Ret ret = (Ret) instruction;
+            if (ret.getReg() >= 0) {
+                addRet(ret.getLabel(), ret.getReg());
+            } else {
+                addRet(ret.getLabel());
+            }
+        } else if (instruction instanceof Stop) {
+            addStop(instruction.getLabel());
+        } else if (instruction instanceof FunctionEntry) {
+            addFunctionEntry(instruction.getLabel(), ((FunctionEntry) instruction).getParameters());
+        } else if (instruction instanceof Label) {
+            addLabel(instruction.getLabel());
+        } else if (instruction instanceof BranchZero) {
+            BranchZero branch = (BranchZero) instruction;
+            addBranchZero(branch.getLabel(), branch.getReg(), branch.getAddress());
+        } else {
+            header(Kind.RAW, 0, "");
+            writeInt(raw.size());
+            raw.add(instruction);
+        }
+    }
+
+    /**
+     * Ajoute toutes les instructions d'un programme.
+     * @param program programme contenant les instructions à ajouter
+     */
+    public void addInstructions(Program program) {
+        for (Instruction instruction : program) {
+            addInstruction(instruction);
+        }
+    }
+
+    /**
+     * Ajoute toutes les instructions d'un autre programme compact.
+     * @param program programme compact contenant les instructions à ajouter
+     */
+    public void addInstructions(PackedProgram program) {
+        Cursor cursor = program.cursor();
+        while (cursor.next()) {
+            cursor.copyTo(this);
+        }
+    }
+
+    /**
+     * Curseur placé avant la première instruction.
+     * @return nouveau curseur
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Reconstruit le programme sous forme d'objets.
+     * @return programme équivalent
+     */
+    public Program toProgram() {
+        Program program = new Program();
+        Cursor cursor = cursor();
+        while (cursor.next()) {
+            program.addInstruction(cursor.toInstruction());
+        }
+        return program;
+    }
+
+    /**
+     * Écrit le texte des instructions, chacune terminée par un saut de ligne.
+     * @param out destination du texte
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    public void write(Appendable out) throws IOException {
+        Cursor cursor = cursor();
+        while (cursor.next()) {
+            cursor.write(out);
+        }
+    }
+
+    /**
+     * Convertit le programme en String pour l'affichage
+     * @return String contenant les instructions du programme
+     */
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        try {
+            write(sb);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // Impossible avec un StringBuilder
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Curseur de lecture des instructions dans l'ordre, sans créer d'objet par instruction.
+     * Après {@link #next()}, les getters décrivent l'instruction courante.
+     */
+    public final class Cursor {
+        private int position = 0;
+        private Kind kind;
+        private int op;
+        private String label;
+        private int operand1, operand2, operand3;
+
+        private Cursor() {
+        }
+
+        /**
+         * Passe à l'instruction suivante.
+         * @return false s'il n'y a plus d'instruction
+         */
+        public boolean next() {
+            if (position >= length) {
+                return false;
+            }
+            int header = code[position++] & 0xff;
+            kind = KINDS[header >>> 4];
+            op = header & 0xf;
+            int labelIndex = readInt();
+            label = labelIndex == 0 ? "" : strings.get(labelIndex - 1);
+            switch (kind) {
+                case UAL:
+                case UALI:
+                case COND_JUMP:
+                    operand1 = readInt();
+                    operand2 = readInt();
+                    operand3 = readInt();
+                    break;
+                case MEM:
+                    operand1 = readInt();
+                    operand2 = readInt();
+                    break;
+                case IO:
+                case JUMP_CALL:
+                case RAW:
+                    operand1 = readInt();
+                    break;
+                case RET:
+                    operand1 = op == 1 ? readInt() : -1;
+                    break;
+                case BRANCH_ZERO:
+                    operand1 = readInt();
+                    operand2 = readInt();
+                    break;
+                case FUNCTION_ENTRY:
+                    operand1 = readInt(); // Nombre de paramètres, suivis de leurs numéros
+                    operand2 = position;
+                    for (int i = 0; i < operand1; i++) {
+                        readInt();
+                    }
+                    break;
+                default:
+                    break;
+            }
+            return true;
+        }
+
+        /**
+         * Getter de la sorte de l'instruction courante
+         * @return sorte d'instruction
+         */
+        public Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * Getter du numéro de l'opération de l'instruction courante
+         * @return rang de l'opération dans l'enum Op de sa sorte (pour Ret : 1 si une valeur est retournée)
+         */
+        public int getOpcode() {
+            return op;
+        }
+
+        /**
+         * Getter du label de l'instruction courante
+         * @return label ("" si aucun)
+         */
+        public String getLabel() {
+            return kind == Kind.RAW ? raw.get(operand1).getLabel() : label;
+        }
+
+        /**
+         * Getter de l'opération de l'instruction courante, telle que {@link Instruction#getName()}
+         * @return nom de l'opération
+         */
+        public String getName() {
+            switch (kind) {
+                case UAL: return UAL_OPS[op].toString();
+                case UALI: return UALI_OPS[op].toString();
+                case MEM: return MEM_OPS[op].toString();
+                case IO: return IO_OPS[op].toString();
+                case COND_JUMP: return COND_JUMP_OPS[op].toString();
+                case JUMP_CALL: return JUMP_CALL_OPS[op].toString();
+                case RET: return "RET";
+                case STOP: return "STOP";
+                case LABEL:
+                case FUNCTION_ENTRY: return "";
+                case BRANCH_ZERO: return "JEQ";
+                default: return raw.get(operand1).getName();
+            }
+        }
+
+        /**
+         * Getter du premier registre : destination (UAL, UALi, Mem), registre (IO, BranchZero),
+         * premier registre source (CondJump) ou registre retourné (Ret, -1 si aucun)
+         * @return numéro de registre
+         */
+        public int getRegister1() {
+            return operand1;
+        }
+
+        /**
+         * Getter du second registre : premier registre source (UAL), registre source (UALi),
+         * registre d'adresse (Mem) ou second registre source (CondJump)
+         * @return numéro de registre
+         */
+        public int getRegister2() {
+            return operand2;
+        }
+
+        /**
+         * Getter du troisième registre (second registre source d'une UAL)
+         * @return numéro de registre
+         */
+        public int getRegister3() {
+            return operand3;
+        }
+
+        /**
+         * Getter de la constante immédiate (UALi)
+         * @return constante immédiate
+         */
+        public int getImm() {
+            return (operand3 >>> 1) ^ -(operand3 & 1);
+        }
+
+        /**
+         * Getter de l'adresse de saut (CondJump, JumpCall, BranchZero)
+         * @return adresse de saut
+         */
+        public String getAddress() {
+            switch (kind) {
+                case COND_JUMP: return strings.get(operand3);
+                case BRANCH_ZERO: return strings.get(operand2);
+                default: return strings.get(operand1);
+            }
+        }
+
+        /**
+         * Getter des paramètres de l'entrée de fonction courante
+         * @return noms des paramètres, dans l'ordre
+         */
+        public List<String> getParameters() {
+            ArrayList<String> parameters = new ArrayList<>(operand1);
+            int saved = position;
+            position = operand2;
+            for (int i = 0; i < operand1; i++) {
+                parameters.add(strings.get(readInt()));
+            }
+            position = saved;
+            return parameters;
+        }
+
+        /**
+         * Recrée l'instruction courante sous forme d'objet.
+         * @return instruction équivalente (l'instruction d'origine pour une instruction non codée)
+         */
+        public Instruction toInstruction() {
+            switch (kind) {
+                case UAL: return new UAL(label, UAL_OPS[op], operand1, operand2, operand3);
+                case UALI: return new UALi(label, UALI_OPS[op], operand1, operand2, getImm());
+                case MEM: return new Mem(label, MEM_OPS[op], operand1, operand2);
+                case IO: return new IO(label, IO_OPS[op], operand1);
+                case COND_JUMP: return new CondJump(label, COND_JUMP_OPS[op], operand1, operand2, getAddress());
+                case JUMP_CALL: return new JumpCall(label, JUMP_CALL_OPS[op], getAddress());
+                case RET: return operand1 >= 0 ? new Ret(label, operand1) : new Ret(label);
+                case STOP: return new Stop(label);
+                case LABEL: return new Label(label);
+                case BRANCH_ZERO: return new BranchZero(label, operand1, getAddress());
+                case FUNCTION_ENTRY: return new FunctionEntry(label, getParameters());
+                default: return raw.get(operand1);
+            }
+        }
+
+        /**
+         * Ajoute l'instruction courante à un autre programme compact.
+         * @param program programme de destination
+         */
+        public void copyTo(PackedProgram program) {
+            switch (kind) {
+                case UAL: program.addUAL(label, UAL_OPS[op], operand1, operand2, operand3); break;
+                case UALI: program.addUALi(label, UALI_OPS[op], operand1, operand2, getImm()); break;
+                case MEM: program.addMem(label, MEM_OPS[op], operand1, operand2); break;
+                case IO: program.addIO(label, IO_OPS[op], operand1); break;
+                case COND_JUMP: program.addCondJump(label, COND_JUMP_OPS[op], operand1, operand2, getAddress()); break;
+                case JUMP_CALL: program.addJumpCall(label, JUMP_CALL_OPS[op], getAddress()); break;
+                case RET:
+                    if (operand1 >= 0) {
+                        program.addRet(label, operand1);
+                    } else {
+                        program.addRet(label);
+                    }
+                    break;
+                case STOP: program.addStop(label); break;
+                case LABEL: program.addLabel(label); break;
+                case BRANCH_ZERO: program.addBranchZero(label, operand1, getAddress()); break;
+                case FUNCTION_ENTRY: program.addFunctionEntry(label, getParameters()); break;
+                default: program.addInstruction(raw.get(operand1)); break;
+            }
+        }
+
+        /**
+         * Écrit le texte de l'instruction courante, identique à son toString.
+         * @param out destination du texte
+         * @throws IOException en cas d'erreur d'écriture
+         */
+        public void write(Appendable out) throws IOException {
+            if (kind == Kind.RAW) {
+                raw.get(operand1).emit(out);
+                return;
+            }
+            if (kind == Kind.LABEL || kind == Kind.FUNCTION_ENTRY) {
+                writeEntry(out);
+                return;
+            }
+            if (label != "") {
+                out.append(label).append(": ");
+            }
+            out.append(getName());
+            switch (kind) {
+                case UAL:
+                    Instruction.appendRegister(out, operand1);
+                    Instruction.appendRegister(out, operand2);
+                    Instruction.appendRegister(out, operand3);
+                    break;
+                case UALI:
+                    out.append('i');
+                    Instruction.appendRegister(out, operand1);
+                    Instruction.appendRegister(out, operand2);
+                    out.append(' ');
+                    Instruction.appendInt(out, getImm());
+                    break;
+                case MEM:
+                    Instruction.appendRegister(out, operand1);
+                    Instruction.appendRegister(out, operand2);
+                    break;
+                case IO:
+                    Instruction.appendRegister(out, operand1);
+                    break;
+                case COND_JUMP:
+                    Instruction.appendRegister(out, operand1);
+                    Instruction.appendRegister(out, operand2);
+                    out.append(' ').append(getAddress());
+                    break;
+                case JUMP_CALL:
+                    out.append(' ').append(getAddress());
+                    break;
+                case RET:
+                    if (operand1 >= 0) {
+                        Instruction.appendRegister(out, operand1);
+                    }
+                    break;
+                case BRANCH_ZERO:
+                    Instruction.appendRegister(out, operand1);
+                    out.append(" 0 ").append(getAddress());
+                    break;
+                default:
+                    break;
+            }
+            out.append('\n');
+        }
+
+        /**
+         * Écrit un label seul, suivi pour une entrée de fonction du chargement des paramètres.
+         * @param out destination du texte
+         * @throws IOException en cas d'erreur d'écriture
+         */
+        private void writeEntry(Appendable out) throws IOException {
+            out.append(label).append(":\n");
+            if (kind == Kind.FUNCTION_ENTRY) {
+                int saved = position;
+                position = operand2;
+                for (int i = 0; i < operand1; i++) {
+                    out.append("LD");
+                    Instruction.appendRegister(out, i);
+                    out.append(' ').append(strings.get(readInt())).append('\n');
+                }
+                position = saved;
+            }
+        }
+
+        private int readInt() {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = code[position++];
+                value |= (b & 0x7f) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        }
+    }
+
+    /**
+     * Écrit l'en-tête d'une instruction : sorte, opération et label.
+     * @param kind sorte d'instruction
+     * @param op numéro de l'opération
+     * @param label label de l'instruction
+     */
+    private void header(Kind kind, int op, String label) {
+        ensureCapacity(1);
+        code[length++] = (byte) (kind.ordinal() << 4 | op);
+        writeInt(label == "" ? 0 : intern(label) + 1); // "" partagé : les toString comparent label == ""
+        size++;
+    }
+
+    /**
+     * Numéro d'une chaîne dans la table des labels et adresses, ajoutée si besoin.
+     * @param s label ou adresse de saut
+     * @return numéro de la chaîne
+     */
+    private int intern(String s) {
+        Integer index = stringIndex.get(s);
+        if (index == null) {
+            index = strings.size();
+            strings.add(s);
+            stringIndex.put(s, index);
+        }
+        return index;
+    }
+
+    /**
+     * Écrit un entier positif sur 1 à 5 octets, 7 bits par octet.
+     * @param value entier à écrire
+     */
+    private void writeInt(int value) {
+        ensureCapacity(5);
+        while ((value & ~0x7f) != 0) {
+            code[length++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        code[length++] = (byte) value;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > code.length) {
+            code = Arrays.copyOf(code, Math.max(code.length * 2, length + extra));
+        }
+    }
+}
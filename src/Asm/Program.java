@@ -1,54 +1,192 @@
 package Asm;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
 /**
  * Ceci est une classe permettant de représenter un programme.
+ * <p>
+ * Le programme est une corde : ajouter un autre programme ne recopie pas ses instructions,
+ * il est seulement référencé (les petits programmes sont tout de même recopiés, pour ne
+ * pas multiplier les niveaux). La concaténation des programmes des sous-arbres par le
+ * générateur se fait ainsi en temps constant à chaque niveau, au lieu de recopier le code
+ * d'une expression autant de fois qu'elle a d'ancêtres.
+ * <p>
+ * Un programme ne fait que grandir : une référence retient le nombre d'instructions du
+ * programme ajouté à ce moment, et les instructions qu'il reçoit ensuite n'y apparaissent
+ * pas, exactement comme si elles avaient été recopiées.
  */
-public class Program {
-    private ArrayList<Instruction> instructions;
-  
-    /** 
+public class Program implements Iterable<Instruction> {
+    /**
+     * Taille en dessous de laquelle un programme ajouté est recopié plutôt que référencé.
+     */
+    private static final int COPY_THRESHOLD = 8;
+
+    /**
+     * Début d'un autre programme, référencé par un programme.
+     */
+    private static final class Slice {
+        private final Program program;
+        private final int size;
+
+        private Slice(Program program, int size) {
+            this.program = program;
+            this.size = size;
+        }
+    }
+
+    private final ArrayList<Object> parts; // Instruction ou Slice
+    private int size;
+
+    /**
      * Getter de la liste d'instructions
-     * @return ArrayList<Instruction> contenant les instructions du programme
+     * @return copie non modifiable des instructions du programme, dans l'ordre
      */
-    public ArrayList<Instruction> getInstructions() {
-        return instructions;
+    public List<Instruction> getInstructions() {
+        ArrayList<Instruction> instructions = new ArrayList<>(size);
+        for (Instruction instr : this) {
+            instructions.add(instr);
+        }
+        return Collections.unmodifiableList(instructions);
     }
-  
-    
-    /** 
+
+    /**
+     * Getter du nombre d'instructions
+     * @return nombre d'instructions du programme
+     */
+    public int size() {
+        return size;
+    }
+
+
+    /**
      * Ajoute instruction à la fin de this.
      * @param instruction Instruction à ajouter
      */
     public void addInstruction(Instruction instruction) {
-        this.instructions.add(instruction);
+        this.parts.add(instruction);
+        this.size++;
     }
 
-    
-    /** 
-     * Ajoute toutes les instructions de program à la fin de this.
+
+    /**
+     * Ajoute toutes les instructions de program à la fin de this, sans les recopier.
      * @param program Programme contenant les instructions à ajouter
      */
     public void addInstructions(Program program) {
-        this.instructions.addAll(program.getInstructions());
+        if (program.size <= COPY_THRESHOLD) {
+            for (Instruction instr : program) {
+                addInstruction(instr);
+            }
+            return;
+        }
+        this.parts.add(new Slice(program, program.size));
+        this.size += program.size;
     }
 
-    
-    /** 
+    /**
+     * Parcourt les instructions dans l'ordre, sans les recopier.
+     * @return itérateur sur les instructions du programme
+     */
+    public Iterator<Instruction> iterator() {
+        return new InstructionIterator(this, size);
+    }
+
+
+    /**
+     * Ecrit le texte des instructions à la suite, chacune terminée par son saut de ligne,
+     * sans créer de chaîne par instruction.
+     * @param out destination du texte
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    public void emit(Appendable out) throws IOException {
+        for (Instruction instr : this) {
+            instr.emit(out);
+        }
+    }
+
+
+    /**
      * Convertit le programme en String pour l'affichage
      * @return String contenant les instructions du programme
      */
     public String toString() {
-        String result = "";
-        for (Instruction instr : instructions) {
-            result += instr.toString();
+        StringBuilder sb = new StringBuilder(size * 16);
+        try {
+            emit(sb);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // Impossible avec un StringBuilder
         }
-        return result;
+        return sb.toString();
     }
 
     /**
      * Constructeur
      */
     public Program() {
-        this.instructions = new ArrayList<Instruction>();
-    }   
+        this.parts = new ArrayList<Object>();
+        this.size = 0;
+    }
+
+    /**
+     * Parcours en profondeur de la corde, avec une pile explicite : la profondeur des
+     * références suit celle de l'arbre syntaxique et ne doit pas dépendre de la pile d'appel.
+     */
+    private static final class InstructionIterator implements Iterator<Instruction> {
+        private final ArrayList<Program> programs = new ArrayList<>();
+        private final ArrayList<int[]> positions = new ArrayList<>(); // {partie suivante, instructions restantes}
+        private Instruction next;
+
+        private InstructionIterator(Program program, int size) {
+            push(program, size);
+            advance();
+        }
+
+        private void push(Program program, int size) {
+            programs.add(program);
+            positions.add(new int[] {0, size});
+        }
+
+        /**
+         * Cherche l'instruction suivante.
+         */
+        private void advance() {
+            next = null;
+            while (!programs.isEmpty()) {
+                int top = programs.size() - 1;
+                int[] position = positions.get(top);
+                if (position[1] == 0) {
+                    programs.remove(top);
+                    positions.remove(top);
+                    continue;
+                }
+                Object part = programs.get(top).parts.get(position[0]++);
+                if (part instanceof Slice) {
+                    Slice slice = (Slice) part;
+                    position[1] -= slice.size;
+                    push(slice.program, slice.size);
+                } else {
+                    position[1]--;
+                    next = (Instruction) part;
+                    return;
+                }
+            }
+        }
+
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        public Instruction next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Instruction result = next;
+            advance();
+            return result;
+        }
+    }
 }
@@ -1,5 +1,15 @@
 package Asm;
+import java.io.IOException;
 public class Ret extends Instruction{
+    private int reg = -1;
+
+    /**
+     * Getter du registre retourné
+     * @return int numéro du registre dont la valeur est retournée, -1 si aucun
+     */
+    public int getReg() {
+        return reg;
+    }
 
     /**
      * Constructeur
@@ -8,17 +18,39 @@ public class Ret extends Instruction{
     public Ret(String label) {
         super(label,"RET");
     }
+    /**
+     * Constructeur d'un retour de valeur
+     * @param label label de l'instruction
+     * @param reg numéro du registre dont la valeur est retournée
+     */
+    public Ret(String label, int reg) {
+        super(label,"RET");
+        this.reg = reg;
+    }
     /**
      * Constructeur sans label
      */
     public Ret() {
         super("","RET");
     }
+    /**
+     * Ecrit le texte de l'instruction sans chaîne intermédiaire
+     * @param out destination du texte
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    public void emit(Appendable out) throws IOException {
+        emitHeader(out);
+        if (reg >= 0) {
+            appendRegister(out, reg);
+        }
+        out.append('\n');
+    }
+
     /** 
      * Conversion en String
      * @return String texte de l'instruction
      */
     public String toString() {
-        return this.label+ (this.label==""?"":": ") + this.name + "\n";
+        return emitToString();
     } 
 }
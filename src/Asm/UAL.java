@@ -1,4 +1,5 @@
 package Asm;
+import java.io.IOException;
 public class UAL extends Instruction{
     
     public static enum Op { ADD, SUB, MUL, DIV, MOD, XOR, AND, OR, SL, SR };
@@ -83,12 +84,25 @@ public class UAL extends Instruction{
         this.sr2 = sr2;
     }
 
+    /**
+     * Ecrit le texte de l'instruction sans chaîne intermédiaire
+     * @param out destination du texte
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    public void emit(Appendable out) throws IOException {
+        emitHeader(out);
+        appendRegister(out, dest);
+        appendRegister(out, sr1);
+        appendRegister(out, sr2);
+        out.append('\n');
+    }
+
     /** 
      * Conversion en String
      * @return String texte de l'instruction
      */
     public String toString() {
-        return this.label+ (this.label==""?"":": ") + this.name + " R" + dest + " R" + sr1 + " R" + sr2 + "\n";
+        return emitToString();
     }
     
 }
@@ -1,4 +1,5 @@
 package Asm;
+import java.io.IOException;
 public class UALi extends Instruction{
     
     public static enum Op { ADD, SUB, MUL, DIV, MOD, XOR, AND, OR, SL, SR };
@@ -82,12 +83,27 @@ public class UALi extends Instruction{
         this.imm = imm;
     }
 
+    /**
+     * Ecrit le texte de l'instruction sans chaîne intermédiaire
+     * @param out destination du texte
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    public void emit(Appendable out) throws IOException {
+        emitHeader(out);
+        out.append('i');
+        appendRegister(out, dest);
+        appendRegister(out, sr);
+        out.append(' ');
+        appendInt(out, imm);
+        out.append('\n');
+    }
+
     /** 
      * Conversion en String
      * @return String texte de l'instruction
      */
     public String toString() {
-        return this.label+ (this.label==""?"":": ") + this.name + "i R" + dest + " R" + sr + " " + imm + "\n";
+        return emitToString();
     }
     
 }
\ No newline at end of file
@@ -0,0 +1,89 @@
+package Asm;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+/**
+ * Emetteur écrivant le texte des instructions dans un Writer.
+ * <p>
+ * Les instructions sont écrites dans un tampon de texte réutilisé, transmis au Writer par
+ * blocs : ni chaîne par instruction, ni appel au Writer (synchronisé) par caractère.
+ */
+public class WriterEmitter implements Emitter {
+    private static final int BUFFER_SIZE = 8192;
+
+    private Writer writer;
+    private final StringBuilder buffer = new StringBuilder(BUFFER_SIZE + 256);
+    private final char[] chars = new char[BUFFER_SIZE + 256];
+
+    /**
+     * Constructeur
+     * @param writer destination du texte assembleur
+     */
+    public WriterEmitter(Writer writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Ecrit les instructions, chacune se terminant par son propre saut de ligne.
+     * @param program instructions à écrire
+     */
+    public void emit(Program program) {
+        try {
+            for (Instruction instr : program) {
+                instr.emit(buffer);
+                if (buffer.length() >= BUFFER_SIZE) {
+                    drain();
+                }
+            }
+            drain();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Ecrit les instructions d'un programme compact, directement depuis leur codage.
+     * @param program instructions à écrire
+     */
+    public void emit(PackedProgram program) {
+        try {
+            PackedProgram.Cursor cursor = program.cursor();
+            while (cursor.next()) {
+                cursor.write(buffer);
+                if (buffer.length() >= BUFFER_SIZE) {
+                    drain();
+                }
+            }
+            drain();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Vide le Writer sous-jacent.
+     */
+    public void flush() {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Transmet le tampon au Writer et le vide.
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    private void drain() throws IOException {
+        int offset = 0;
+        while (offset < buffer.length()) {
+            int count = Math.min(chars.length, buffer.length() - offset);
+            buffer.getChars(offset, offset + count, chars, 0);
+            writer.write(chars, 0, count);
+            offset += count;
+        }
+        buffer.setLength(0);
+    }
+}
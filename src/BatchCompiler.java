@@ -0,0 +1,206 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compilation d'un lot de fichiers TCL en parallèle dans une seule JVM.
+ * <p>
+ * Chaque fichier est compilé par une tâche indépendante sur un {@link ForkJoinPool}
+ * (vol de tâches), avec son propre pipeline lexer / parser / typer / générateur.
+ */
+public class BatchCompiler {
+    private final Compiler compiler;
+    private final int parallelism;
+    private final Path outputDir;
+
+    /**
+     * Un fichier à compiler et le fichier assembleur associé.
+     */
+    private static class Job {
+        private final Path input;
+        private final Path output;
+
+        private Job(Path input, Path output) {
+            this.input = input;
+            this.output = output;
+        }
+    }
+
+    /**
+     * Bilan de la compilation d'un lot.
+     */
+    public static class Summary {
+        private final int files;
+        private final List<String> failures;
+        private final long elapsedNanos;
+
+        /**
+         * Constructeur
+         * @param files nombre de fichiers traités
+         * @param failures messages d'échec, un par fichier en erreur
+         * @param elapsedNanos durée totale en nanosecondes
+         */
+        public Summary(int files, List<String> failures, long elapsedNanos) {
+            this.files = files;
+            this.failures = failures;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * Getter du nombre de fichiers traités
+         * @return nombre de fichiers
+         */
+        public int getFiles() {
+            return files;
+        }
+
+        /**
+         * Getter des échecs
+         * @return messages d'échec
+         */
+        public List<String> getFailures() {
+            return failures;
+        }
+
+        /**
+         * Getter du débit
+         * @return nombre de fichiers compilés par seconde
+         */
+        public double getFilesPerSecond() {
+            return elapsedNanos == 0 ? 0 : files / (elapsedNanos / 1e9);
+        }
+
+        /**
+         * Conversion pour l'affichage
+         * @return String
+         */
+        public String toString() {
+            return String.format("%d fichier(s), %d échec(s), %.3f s, %.1f fichiers/s",
+                    files, failures.size(), elapsedNanos / 1e9, getFilesPerSecond());
+        }
+    }
+
+    /**
+     * Constructeur
+     * @param compiler chaîne de compilation partagée par toutes les tâches
+     * @param parallelism nombre de threads de compilation
+     * @param outputDir répertoire de sortie (null pour écrire à côté de chaque source)
+     */
+    public BatchCompiler(Compiler compiler, int parallelism, Path outputDir) {
+        this.compiler = compiler;
+        this.parallelism = parallelism;
+        this.outputDir = outputDir;
+    }
+
+    /**
+     * Compile tous les fichiers désignés. Un répertoire est parcouru récursivement.
+     *
+     * @param paths fichiers ou répertoires sources
+     * @return le bilan de la compilation
+     * @throws IOException si un répertoire ne peut pas être parcouru
+     */
+    public Summary run(List<Path> paths) throws IOException {
+        List<Job> jobs = collectJobs(paths);
+        List<String> failures = new ArrayList<>();
+
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (Job job : jobs) {
+                results.add(pool.submit(() -> compile(job)));
+            }
+            for (Future<String> result : results) {
+                String failure = result.get();
+                if (failure != null) {
+                    failures.add(failure);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Compilation interrompue", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        return new Summary(jobs.size(), failures, System.nanoTime() - start);
+    }
+
+    /**
+     * Compile un fichier du lot.
+     *
+     * @param job fichier à compiler
+     * @return null si la compilation a réussi, sinon le message d'échec
+     */
+    private String compile(Job job) {
+        try {
+            if (job.output.getParent() != null) {
+                Files.createDirectories(job.output.getParent());
+            }
+            compiler.compileFile(job.input, job.output);
+            if (Trace.DRIVER.isEnabled()) {
+                Trace.DRIVER.log(job.input + " -> " + job.output);
+            }
+            return null;
+        } catch (Exception | StackOverflowError e) {
+            return job.input + " : " + e;
+        }
+    }
+
+    /**
+     * Construit la liste des fichiers à compiler. Les fichiers .asm, les rapports .json et
+     * les fichiers objets .tclo sont ignorés lors du parcours d'un répertoire.
+     *
+     * @param paths fichiers ou répertoires sources
+     * @return la liste des fichiers et de leur sortie
+     * @throws IOException si un répertoire ne peut pas être parcouru
+     */
+    private List<Job> collectJobs(List<Path> paths) throws IOException {
+        List<Job> jobs = new ArrayList<>();
+        for (Path path : paths) {
+            if (Files.isDirectory(path)) {
+                List<Path> files;
+                try (Stream<Path> walk = Files.walk(path)) {
+                    files = walk.filter(Files::isRegularFile)
+                            .filter(p -> !p.getFileName().toString().endsWith(".asm"))
+                            .filter(p -> !p.getFileName().toString().endsWith(".json"))
+                            .filter(p -> !p.getFileName().toString().endsWith(".tclo"))
+                            .sorted()
+                            .collect(Collectors.toList());
+                }
+                for (Path file : files) {
+                    jobs.add(new Job(file, outputFor(file, path.relativize(file))));
+                }
+            } else {
+                jobs.add(new Job(path, outputFor(path, path.getFileName())));
+            }
+        }
+        return jobs;
+    }
+
+    /**
+     * Calcule le fichier assembleur associé à un source : même nom avec l'extension .asm,
+     * dans le répertoire de sortie s'il est défini.
+     *
+     * @param input fichier source
+     * @param relative chemin du source relatif à la racine parcourue
+     * @return le fichier de sortie
+     */
+    private Path outputFor(Path input, Path relative) {
+        String name = relative.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String asmName = (dot > 0 ? name.substring(0, dot) : name) + ".asm";
+        if (outputDir == null) {
+            return input.resolveSibling(asmName);
+        }
+        return outputDir.resolve(relative).resolveSibling(asmName);
+    }
+}
@@ -1,14 +1,15 @@
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Stack;
 import Asm.*;
 
 import org.antlr.v4.runtime.tree.AbstractParseTreeVisitor;
+import org.antlr.v4.runtime.tree.ParseTree;
 import org.antlr.v4.runtime.tree.TerminalNode;
 
-import Type.Type;
 import Type.UnknownType;
 import Asm.Instruction;
 
@@ -18,16 +19,93 @@ import Asm.Instruction;
 public class CodeGenerator  extends AbstractParseTreeVisitor<Program> implements grammarTCLVisitor<Program> {
 
 
-    private Stack<Map<String, Type>> typeScopes;
+    private final TypedTree typedTree;
+    private final Map<SymbolTable.Symbol, Integer> declarationRegisters = new HashMap<>();
     private int nextRegister = 1;
     private int nextLabel = 0;
     private Stack<Map<String, Integer>> registerScopes = new Stack<>();
+    private Emitter emitter = null;
+    private FunctionCache cache = null;
+    private String globalRegistersDigest = "";
+    private Map<String, Integer> globalRegistersAdded = null;
 
-    public CodeGenerator(Stack<Map<String, Type>> typeScopes) {
-        this.typeScopes = typeScopes;
+    /**
+     * Constructeur
+     *
+     * @param typedTree résultats du typage de l'arbre à générer : les variables sont retrouvées
+     *                  par leur déclaration ; null pour générer sans typage, en cherchant les noms
+     */
+    public CodeGenerator(TypedTree typedTree) {
+        this.typedTree = typedTree;
         this.registerScopes.push(new HashMap<>());
     }
 
+    /**
+     * Définit la destination vers laquelle {@link #visitMain} émet chaque fonction dès
+     * qu'elle est générée. Sans émetteur, tout le programme est accumulé en mémoire.
+     *
+     * @param emitter destination du code généré (null pour tout accumuler)
+     */
+    public void setEmitter(Emitter emitter) {
+        this.emitter = emitter;
+    }
+
+    /**
+     * Active le cache du code généré : une fonction dont le code et l'état du générateur
+     * à son entrée n'ont pas changé n'est pas re-générée.
+     *
+     * @param cache cache des fonctions (null pour le désactiver)
+     */
+    public void setCache(FunctionCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Génère le code d'une fonction, ou le reprend du cache si l'état d'entrée est identique.
+     * Les registres que la fonction associe à des noms dans le scope global sont rejoués
+     * pour que les fonctions suivantes voient le même état qu'après une vraie génération.
+     *
+     * @param ctx déclaration de la fonction
+     * @return code de la fonction
+     */
+    private Program generateFunction(grammarTCLParser.Decl_fctContext ctx) {
+        if (cache == null) {
+            return visit(ctx);
+        }
+        String key = cache.fragmentKey(ctx, nextRegister, nextLabel, globalRegistersDigest);
+        FunctionCache.Fragment fragment = cache.loadFragment(key);
+        if (fragment != null) {
+            for (Map.Entry<String, Integer> entry : fragment.getRegisters().entrySet()) {
+                registerScopes.peek().put(entry.getKey(), entry.getValue());
+                globalRegistersDigest = FunctionCache.chain(globalRegistersDigest, entry.getKey(), entry.getValue());
+            }
+            nextRegister = fragment.getNextRegister();
+            nextLabel = fragment.getNextLabel();
+            return fragment.getProgram();
+        }
+        globalRegistersAdded = new LinkedHashMap<>();
+        Program program = visit(ctx);
+        cache.storeFragment(key, new FunctionCache.Fragment(program, nextRegister, nextLabel, globalRegistersAdded));
+        globalRegistersAdded = null;
+        return program;
+    }
+
+    /**
+     * Ajoute le code d'une fonction au programme : il est émis et vidé immédiatement
+     * si un émetteur est défini, sinon il est accumulé dans le programme.
+     *
+     * @param program programme en cours de construction
+     * @param fragment code d'une fonction terminée
+     */
+    private void appendFunction(Program program, Program fragment) {
+        if (emitter != null) {
+            emitter.emit(fragment);
+            emitter.flush();
+        } else {
+            program.addInstructions(fragment);
+        }
+    }
+
     /**
      * Associe un registre unique à une variable dans le scope courant.
      *
@@ -38,6 +116,12 @@ public class CodeGenerator  extends AbstractParseTreeVisitor<Program> implements
         Map<String, Integer> currentScope = registerScopes.peek();
         if (!currentScope.containsKey(varName)) {
             currentScope.put(varName, nextRegister++);
+            if (cache != null && registerScopes.size() == 1) {
+                globalRegistersDigest = FunctionCache.chain(globalRegistersDigest, varName, currentScope.get(varName));
+                if (globalRegistersAdded != null) {
+                    globalRegistersAdded.put(varName, currentScope.get(varName));
+                }
+            }
         }
         return currentScope.get(varName);
     }
@@ -59,6 +143,30 @@ public class CodeGenerator  extends AbstractParseTreeVisitor<Program> implements
         throw new RuntimeException("Variable non définie : " + varName);
     }
 
+    /**
+     * Associe le registre d'une variable à sa déclaration, telle qu'enregistrée par le typage.
+     *
+     * @param node nœud de la déclaration
+     * @param register registre de la variable
+     */
+    private void bindRegister(ParseTree node, int register) {
+        SymbolTable.Symbol symbol = typedTree == null ? null : typedTree.getBinding(node);
+        if (symbol != null) {
+            declarationRegisters.put(symbol, register);
+        }
+    }
+
+    /**
+     * Registre de la déclaration à laquelle un nœud se rapporte, sans chercher le nom dans les scopes.
+     *
+     * @param node nœud qui nomme une variable
+     * @return le registre, ou null si le typage n'a pas enregistré la déclaration ou si elle n'a pas de registre
+     */
+    private Integer boundRegister(ParseTree node) {
+        SymbolTable.Symbol symbol = typedTree == null ? null : typedTree.getBinding(node);
+        return symbol == null ? null : declarationRegisters.get(symbol);
+    }
+
     /**
      * Ouvre un nouveau scope (nouveau bloc).
      */
@@ -118,7 +226,7 @@ public class CodeGenerator  extends AbstractParseTreeVisitor<Program> implements
      */
     @Override
     public Program visitInteger(grammarTCLParser.IntegerContext ctx) {
-        System.out.println("visitInt");
+        Trace.CODEGEN.log("visitInt");
         Program program = new Program();
         int value = Integer.parseInt(ctx.INT().getText());
         int register = nextRegister++;
@@ -141,7 +249,7 @@ public class CodeGenerator  extends AbstractParseTreeVisitor<Program> implements
      */
     @Override
     public Program visitBoolean(grammarTCLParser.BooleanContext ctx) {
-        System.out.println("visitBool");
+        Trace.CODEGEN.log("visitBool");
         Program program = new Program();
         int register = nextRegister++;
         int value = ctx.BOOL().getText().equals("true") ? 1 : 0;
@@ -165,12 +273,19 @@ public class CodeGenerator  extends AbstractParseTreeVisitor<Program> implements
      */
     @Override
     public Program visitVariable(grammarTCLParser.VariableContext ctx) {
-        System.out.println("visitVariable");
+        Trace.CODEGEN.log("visitVariable");
 
 
-        String varName = ctx.VAR().getText();
         Program program = new Program();
 
+        Integer boundRegister = boundRegister(ctx);
+        if (boundRegister != null) {
+            program.addInstruction(new UALi(UALi.Op.ADD, nextRegister, boundRegister, 0));
+            nextRegister++;
+            return program;
+        }
+
+        String varName = ctx.VAR().getText();
         try {
 
             int variableRegister = lookupRegister(varName);
@@ -204,7 +319,7 @@ public class CodeGenerator  extends AbstractParseTreeVisitor<Program> implements
      */
     @Override
     public Program visitAddition(grammarTCLParser.AdditionContext ctx) {
-        System.out.println("visitAdd");
+        Trace.CODEGEN.log("visitAdd");
 
         Program leftProgram = visit(ctx.expr(0));
         int leftRegister = nextRegister - 1;
@@ -235,7 +350,7 @@ public class CodeGenerator  extends AbstractParseTreeVisitor<Program> implements
      */
     @Override
     public Program visitMultiplication(grammarTCLParser.MultiplicationContext ctx) {
-        System.out.println("visitMul");
+        Trace.CODEGEN.log("visitMul");
 
         Program leftProgram = visit(ctx.expr(0));
         int leftRegister = nextRegister - 1;
@@ -267,7 +382,7 @@ public class CodeGenerator  extends AbstractParseTreeVisitor<Program> implements
      */
     @Override
     public Program visitOpposite(grammarTCLParser.OppositeContext ctx) {
-        System.out.println("visitOpposite");
+        Trace.CODEGEN.log("visitOpposite");
 
         Program childProgram = visit(ctx.expr());
         int childRegister = nextRegister - 1;
@@ -294,7 +409,7 @@ public class CodeGenerator  extends AbstractParseTreeVisitor<Program> implements
      */
     @Override
     public Program visitNegation(grammarTCLParser.NegationContext ctx) {
-        System.out.println("visitNegation");
+        Trace.CODEGEN.log("visitNegation");
 
         Program childProgram = visit(ctx.expr());
         int childRegister = nextRegister - 1;
@@ -322,7 +437,7 @@ public class CodeGenerator  extends AbstractParseTreeVisitor<Program> implements
      */
     @Override
     public Program visitAnd(grammarTCLParser.AndContext ctx) {
-        System.out.println("visitAnd");
+        Trace.CODEGEN.log("visitAnd");
         Program program = new Program();
 
 
@@ -353,7 +468,7 @@ public class CodeGenerator  extends AbstractParseTreeVisitor<Program> implements
      * @return Un programme contenant les instructions pour calculer l'opération logique OR.
      */
     public Program visitOr(grammarTCLParser.OrContext ctx) {
-        System.out.println("visitOr");
+        Trace.CODEGEN.log("visitOr");
 
         Program program = new Program();
 
@@ -391,7 +506,7 @@ public class CodeGenerator  extends AbstractParseTreeVisitor<Program> implements
      */
     @Override
     public Program visitComparison(grammarTCLParser.ComparisonContext ctx) {
-        System.out.println("visitComparaison");
+        Trace.CODEGEN.log("visitComparaison");
         Program program = new Program();
 
 
@@ -439,10 +554,11 @@ public class CodeGenerator  extends AbstractParseTreeVisitor<Program> implements
         program.addInstruction( new JumpCall(JumpCall.Op.JMP,labelEnd));
 
 
+        program.addInstruction(new Label(labelTrue));
         program.addInstruction(new UALi(UALi.Op.ADD,resultRegister , resultRegister ,1));
 
 
-        program.addInstruction(new Instruction(labelEnd, ""){});
+        program.addInstruction(new Label(labelEnd));
 
         return program;
     }
@@ -460,7 +576,7 @@ public class CodeGenerator  extends AbstractParseTreeVisitor<Program> implements
      */
     @Override
     public Program visitEquality(grammarTCLParser.EqualityContext ctx) {
-        System.out.println("visitEquality");
+        Trace.CODEGEN.log("visitEquality");
         Program program = new Program();
 
 
@@ -498,10 +614,11 @@ public class CodeGenerator  extends AbstractParseTreeVisitor<Program> implements
         program.addInstruction( new JumpCall(JumpCall.Op.JMP,labelEnd));
 
 
+        program.addInstruction(new Label(labelTrue));
         program.addInstruction(new UALi(UALi.Op.ADD,resultRegister , resultRegister ,1));
 
 
-        program.addInstruction(new Instruction(labelEnd, ""){});
+        program.addInstruction(new Label(labelEnd));
 
         return program;
 
@@ -520,7 +637,7 @@ public class CodeGenerator  extends AbstractParseTreeVisitor<Program> implements
      */
     @Override
     public Program visitDeclaration(grammarTCLParser.DeclarationContext ctx) {
-        System.out.println("visitDecla");
+        Trace.CODEGEN.log("visitDecla");
         Program program = new Program();
 
 
@@ -528,6 +645,7 @@ public class CodeGenerator  extends AbstractParseTreeVisitor<Program> implements
 
 
         int varRegister = assignRegister(varName);
+        bindRegister(ctx, varRegister);
 
 
 
@@ -567,17 +685,19 @@ public class CodeGenerator  extends AbstractParseTreeVisitor<Program> implements
      */
     @Override
     public Program visitAssignment(grammarTCLParser.AssignmentContext ctx) {
-        System.out.println("visitIF");
+        Trace.CODEGEN.log("visitAssignment");
         Program program = new Program();
 
 
         String variableName = ctx.VAR().getText();
+        Integer boundRegister = boundRegister(ctx);
 
-
-        try {
-            lookupRegister(variableName);
-        } catch (RuntimeException e) {
-            throw new IllegalStateException("Variable non déclarée : " + variableName, e);
+        if (boundRegister == null) {
+            try {
+                lookupRegister(variableName);
+            } catch (RuntimeException e) {
+                throw new IllegalStateException("Variable non déclarée : " + variableName, e);
+            }
         }
 
 
@@ -591,12 +711,8 @@ public class CodeGenerator  extends AbstractParseTreeVisitor<Program> implements
         }
 
 
-        int variableRegister;
-        if (registerScopes.peek().containsKey(variableName)) {
-            variableRegister = registerScopes.peek().get(variableName);
-        } else {
-            variableRegister = assignRegister(variableName);
-        }
+        // Registre de la déclaration la plus interne, comme la déclaration enregistrée par le typage
+        int variableRegister = boundRegister != null ? boundRegister : lookupRegister(variableName);
 
 
         program.addInstruction(new UALi(UALi.Op.ADD, variableRegister, expressionRegister, 0));
@@ -630,7 +746,7 @@ public class CodeGenerator  extends AbstractParseTreeVisitor<Program> implements
      */
     @Override
     public Program visitIf(grammarTCLParser.IfContext ctx) {
-        System.out.println("visitIF");
+        Trace.CODEGEN.log("visitIF");
         Program program = new Program();
 
 
@@ -647,8 +763,7 @@ public class CodeGenerator  extends AbstractParseTreeVisitor<Program> implements
         }
 
 
-        program.addInstruction(new Instruction(null, "JEQ R" + conditionRegister + " 0 " + elseLabel) {
-        });
+        program.addInstruction(new BranchZero(conditionRegister, elseLabel));
 
 
         Program ifProgram = visit(ctx.instr(0));
@@ -656,13 +771,11 @@ public class CodeGenerator  extends AbstractParseTreeVisitor<Program> implements
 
 
         if (ctx.ELSE() != null) {
-            program.addInstruction(new Instruction(null, "JMP " + endLabel) {
-            });
+            program.addInstruction(new JumpCall(JumpCall.Op.JMP, endLabel));
         }
 
 
-        program.addInstruction(new Instruction(elseLabel + ":", null) {
-        });
+        program.addInstruction(new Label(elseLabel));
 
 
         if (ctx.instr().size() > 1) {
@@ -671,8 +784,7 @@ public class CodeGenerator  extends AbstractParseTreeVisitor<Program> implements
         }
 
 
-        program.addInstruction(new Instruction(endLabel + ":", null) {
-        });
+        program.addInstruction(new Label(endLabel));
 
         return program;
     }
@@ -691,7 +803,7 @@ public class CodeGenerator  extends AbstractParseTreeVisitor<Program> implements
      */
     @Override
     public Program visitWhile(grammarTCLParser.WhileContext ctx) {
-        System.out.println("visitWhile");
+        Trace.CODEGEN.log("visitWhile");
 
         Program program = new Program();
 
@@ -700,8 +812,7 @@ public class CodeGenerator  extends AbstractParseTreeVisitor<Program> implements
         String loopEndLabel = "WHILE_END_" + nextLabel;
 
 
-        program.addInstruction(new Instruction(loopStartLabel + ":", null) {
-        });
+        program.addInstruction(new Label(loopStartLabel));
 
 
         Program conditionProgram = visit(ctx.expr());
@@ -714,20 +825,17 @@ public class CodeGenerator  extends AbstractParseTreeVisitor<Program> implements
         }
 
 
-        program.addInstruction(new Instruction(null, "JEQ R" + conditionRegister + " 0 " + loopEndLabel) {
-        });
+        program.addInstruction(new BranchZero(conditionRegister, loopEndLabel));
 
 
         Program bodyProgram = visit(ctx.instr());
         program.addInstructions(bodyProgram);
 
 
-        program.addInstruction(new Instruction(null, "JMP " + loopStartLabel) {
-        });
+        program.addInstruction(new JumpCall(JumpCall.Op.JMP, loopStartLabel));
 
 
-        program.addInstruction(new Instruction(loopEndLabel + ":", null) {
-        });
+        program.addInstruction(new Label(loopEndLabel));
 
         return program;
 
@@ -754,7 +862,7 @@ public class CodeGenerator  extends AbstractParseTreeVisitor<Program> implements
      */
     @Override
     public Program visitFor(grammarTCLParser.ForContext ctx) {
-        System.out.println("visitFor");
+        Trace.CODEGEN.log("visitFor");
         Program program = new Program();
 
 
@@ -768,8 +876,7 @@ public class CodeGenerator  extends AbstractParseTreeVisitor<Program> implements
         }
 
 
-        program.addInstruction(new Instruction(loopStartLabel + ":", null) {
-        });
+        program.addInstruction(new Label(loopStartLabel));
 
 
         Program conditionProgram = visit(ctx.expr());
@@ -782,8 +889,7 @@ public class CodeGenerator  extends AbstractParseTreeVisitor<Program> implements
         }
 
 
-        program.addInstruction(new Instruction(null, "JEQ R" + conditionRegister + " 0 " + loopEndLabel) {
-        });
+        program.addInstruction(new BranchZero(conditionRegister, loopEndLabel));
 
 
         if (ctx.instr(2) != null) {
@@ -798,12 +904,10 @@ public class CodeGenerator  extends AbstractParseTreeVisitor<Program> implements
         }
 
 
-        program.addInstruction(new Instruction(null, "JMP " + loopStartLabel) {
-        });
+        program.addInstruction(new JumpCall(JumpCall.Op.JMP, loopStartLabel));
 
 
-        program.addInstruction(new Instruction(loopEndLabel + ":", null) {
-        });
+        program.addInstruction(new Label(loopEndLabel));
 
         return program;
 
@@ -823,7 +927,7 @@ public class CodeGenerator  extends AbstractParseTreeVisitor<Program> implements
      */
     @Override
     public Program visitBlock(grammarTCLParser.BlockContext ctx) {
-        System.out.println("visitBlock");
+        Trace.CODEGEN.log("visitBlock");
 
         enterScope();
 
@@ -856,7 +960,7 @@ public class CodeGenerator  extends AbstractParseTreeVisitor<Program> implements
      */
     @Override
     public Program visitPrint(grammarTCLParser.PrintContext ctx) {
-        System.out.println("visitPrint");
+        Trace.CODEGEN.log("visitPrint");
         Program program = new Program();
 
 
@@ -887,7 +991,7 @@ public class CodeGenerator  extends AbstractParseTreeVisitor<Program> implements
      */
     @Override
     public Program visitReturn(grammarTCLParser.ReturnContext ctx) {
-        System.out.println("visitReturn");
+        Trace.CODEGEN.log("visitReturn");
 
         Program program = new Program();
 
@@ -895,8 +999,8 @@ public class CodeGenerator  extends AbstractParseTreeVisitor<Program> implements
         if (ctx.expr() instanceof grammarTCLParser.VariableContext) {
 
             grammarTCLParser.VariableContext varCtx = (grammarTCLParser.VariableContext) ctx.expr();
-            String varName = varCtx.VAR().getText();
-            int resultRegister = lookupRegister(varName);
+            Integer boundRegister = boundRegister(varCtx);
+            int resultRegister = boundRegister != null ? boundRegister : lookupRegister(varCtx.VAR().getText());
 
 
             if (resultRegister != 0) {
@@ -939,24 +1043,19 @@ public class CodeGenerator  extends AbstractParseTreeVisitor<Program> implements
      */
     @Override
     public Program visitDecl_fct(grammarTCLParser.Decl_fctContext ctx) {
-        System.out.println("Decl_fct");
+        Trace.CODEGEN.log("Decl_fct");
         Program program = new Program();
 
 
         String functionName = ctx.VAR(0).getText();
 
 
-        program.addInstruction(new Instruction(functionName + ":", "") {
-        });
-
-
         List<TerminalNode> arguments = ctx.VAR().subList(1, ctx.VAR().size());
-        int argCount = arguments.size();
-        for (int i = 0; i < argCount; i++) {
-            String argName = arguments.get(i).getText();
-            program.addInstruction(new Instruction(null, "LD R" + i + " " + argName) {
-            });
+        List<String> parameters = new ArrayList<>(arguments.size());
+        for (TerminalNode argument : arguments) {
+            parameters.add(argument.getText());
         }
+        program.addInstruction(new FunctionEntry(functionName, parameters));
 
 
         Program bodyProgram = visit(ctx.core_fct());
@@ -968,18 +1067,15 @@ public class CodeGenerator  extends AbstractParseTreeVisitor<Program> implements
             Program returnProgram = visit(ctx.core_fct().expr());
             int returnRegister = nextRegister - 1;
             program.addInstructions(returnProgram);
-            program.addInstruction(new Instruction(null, "RET R" + returnRegister) {
-            });
+            program.addInstruction(new Ret("", returnRegister));
         } else {
 
-            program.addInstruction(new Instruction(null, "RET") {
-            });
+            program.addInstruction(new Ret());
         }
 
 
         String endLabel = "END_" + functionName;
-        program.addInstruction(new Instruction(endLabel + ":", "") {
-        });
+        program.addInstruction(new Label(endLabel));
 
         return program;
     }
@@ -997,7 +1093,7 @@ public class CodeGenerator  extends AbstractParseTreeVisitor<Program> implements
      */
     @Override
     public Program visitCore_fct(grammarTCLParser.Core_fctContext ctx) {
-        System.out.println("Core_fct");
+        Trace.CODEGEN.log("Core_fct");
 
         Program program = new Program();
 
@@ -1033,27 +1129,29 @@ public class CodeGenerator  extends AbstractParseTreeVisitor<Program> implements
      * Elle parcourt les déclarations de fonctions, génère le code correspondant, et traite le corps
      * principal du programme s'il est défini.
      *
+     * Si un émetteur est défini, chaque fonction lui est transmise dès sa génération
+     * et le programme retourné reste vide : la mémoire utilisée ne dépend que de la
+     * plus grande fonction, pas de la taille du programme.
+     *
      * @param ctx Le contexte de la fonction principale, fourni par l'analyseur syntaxique.
      * @return Un programme contenant les instructions combinées pour les déclarations de fonctions
-     *         et le corps principal du programme.
+     *         et le corps principal du programme (vide si un émetteur est défini).
      */
     @Override
     public Program visitMain(grammarTCLParser.MainContext ctx) {
-        System.out.println("visitMain");
+        Trace.CODEGEN.log("visitMain");
         this.nextRegister=0;
         Program program = new Program();
 
 
         for (grammarTCLParser.Decl_fctContext declCtx : ctx.decl_fct()) {
 
-            Program declProgram = visit(declCtx);
-            program.addInstructions(declProgram);
+            appendFunction(program, generateFunction(declCtx));
         }
 
 
         if (ctx.core_fct() != null) {
-            Program coreProgram = visit(ctx.core_fct());
-            program.addInstructions(coreProgram);
+            appendFunction(program, visit(ctx.core_fct()));
         }
 
 
@@ -1074,7 +1172,7 @@ public class CodeGenerator  extends AbstractParseTreeVisitor<Program> implements
      */
     @Override
     public Program visitBase_type(grammarTCLParser.Base_typeContext ctx) {
-        System.out.println("visitBase_type");
+        Trace.CODEGEN.log("visitBase_type");
         String type = ctx.getText();
         Program program = new Program();
 
@@ -1109,7 +1207,7 @@ public class CodeGenerator  extends AbstractParseTreeVisitor<Program> implements
      */
     @Override
     public Program visitBrackets(grammarTCLParser.BracketsContext ctx) {
-        System.out.println("visitBrackets");
+        Trace.CODEGEN.log("visitBrackets");
         return visit(ctx.expr());
     }
 
@@ -1124,7 +1222,7 @@ public class CodeGenerator  extends AbstractParseTreeVisitor<Program> implements
      */
     @Override
     public Program visitCall(grammarTCLParser.CallContext ctx) {
-        System.out.println("visitCall");
+        Trace.CODEGEN.log("visitCall");
 
         Program program = new Program();
 
@@ -0,0 +1,251 @@
+import Asm.Emitter;
+import Asm.Program;
+import org.antlr.v4.runtime.tree.ParseTree;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Mesures d'une compilation, phase par phase : temps écoulé, temps CPU et octets alloués
+ * par le thread qui compile, ainsi que le nombre de tokens, de nœuds et d'instructions produits.
+ * Le temps CPU et les allocations des threads auxiliaires d'une phase (tâches du typage
+ * parallèle) y sont ajoutés par {@link #addWorkers} : le temps CPU d'une phase peut alors
+ * dépasser son temps écoulé.
+ * <p>
+ * Une phase peut être ouverte et fermée plusieurs fois, les mesures s'additionnent : c'est le cas
+ * de la génération et de l'écriture, entrelacées quand le code est émis fonction par fonction.
+ * Un rapport n'est utilisé que par le thread qui compile.
+ * <p>
+ * Le rapport est écrit au format JSON pour pouvoir comparer les versions du compilateur.
+ */
+public class CompileReport {
+    /**
+     * Phases de la compilation, dans l'ordre.
+     */
+    public enum Phase {
+        READ, LEX, PARSE, TYPE, CODEGEN, WRITE
+    }
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final String source;
+    private final Map<Phase, long[]> totals = new EnumMap<>(Phase.class);
+    private final Map<Phase, long[]> starts = new EnumMap<>(Phase.class);
+    private long tokens = 0;
+    private long nodes = 0;
+    private long instructions = 0;
+
+    /**
+     * Constructeur
+     * @param source nom du fichier source compilé
+     */
+    public CompileReport(String source) {
+        this.source = source;
+    }
+
+    /**
+     * Ouvre une phase.
+     * @param phase phase qui commence
+     */
+    public void begin(Phase phase) {
+        starts.put(phase, sample());
+    }
+
+    /**
+     * Ferme une phase et ajoute ses mesures aux totaux.
+     * @param phase phase qui se termine
+     */
+    public void end(Phase phase) {
+        long[] start = starts.remove(phase);
+        if (start == null) {
+            throw new IllegalStateException("Phase non commencée : " + phase);
+        }
+        long[] now = sample();
+        long[] total = totals.computeIfAbsent(phase, p -> new long[3]);
+        for (int i = 0; i < total.length; i++) {
+            total[i] += now[i] - start[i];
+        }
+    }
+
+    /**
+     * Ajoute à une phase le temps CPU et les allocations mesurés sur des threads auxiliaires.
+     * @param phase phase concernée
+     * @param workers mesures des threads auxiliaires
+     */
+    public void addWorkers(Phase phase, WorkerCounters workers) {
+        long[] total = totals.computeIfAbsent(phase, p -> new long[3]);
+        total[1] += workers.cpuNanos.get();
+        total[2] += workers.allocatedBytes.get();
+    }
+
+    /**
+     * Temps CPU et octets alloués par des threads auxiliaires pour une phase, que les compteurs
+     * du thread qui compile ne voient pas. Chaque tâche mesure ses propres périodes d'exécution,
+     * depuis n'importe quel thread.
+     */
+    public static final class WorkerCounters {
+        private final AtomicLong cpuNanos = new AtomicLong();
+        private final AtomicLong allocatedBytes = new AtomicLong();
+
+        /**
+         * Commence une période d'exécution sur le thread courant.
+         * @return compteurs du thread au début de la période
+         */
+        public long[] start() {
+            return sample();
+        }
+
+        /**
+         * Termine une période d'exécution sur le thread courant et ajoute ses mesures.
+         * @param start compteurs relevés par {@link #start()} sur le même thread
+         */
+        public void stop(long[] start) {
+            long[] now = sample();
+            if (start[1] >= 0) cpuNanos.addAndGet(now[1] - start[1]);
+            if (start[2] >= 0) allocatedBytes.addAndGet(now[2] - start[2]);
+        }
+    }
+
+    /**
+     * Relève les compteurs du thread courant : temps écoulé, temps CPU et octets alloués
+     * (-1 si la JVM ne les fournit pas).
+     * @return les trois compteurs
+     */
+    private static long[] sample() {
+        long cpu = THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : -1;
+        long allocated = -1;
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            allocated = ((com.sun.management.ThreadMXBean) THREADS).getCurrentThreadAllocatedBytes();
+        }
+        return new long[] { System.nanoTime(), cpu, allocated };
+    }
+
+    /**
+     * Setter du nombre de tokens produits par le lexer
+     * @param tokens nombre de tokens
+     */
+    public void setTokens(long tokens) {
+        this.tokens = tokens;
+    }
+
+    /**
+     * Compte les nœuds de l'arbre syntaxique.
+     * @param tree racine de l'arbre
+     */
+    public void countNodes(ParseTree tree) {
+        long count = 0;
+        Deque<ParseTree> pending = new ArrayDeque<>();
+        pending.push(tree);
+        while (!pending.isEmpty()) {
+            ParseTree node = pending.pop();
+            count++;
+            for (int i = 0; i < node.getChildCount(); i++) {
+                pending.push(node.getChild(i));
+            }
+        }
+        this.nodes = count;
+    }
+
+    /**
+     * Ajoute des instructions générées au total.
+     * @param count nombre d'instructions
+     */
+    public void addInstructions(long count) {
+        this.instructions += count;
+    }
+
+    /**
+     * Enveloppe un émetteur pour compter les instructions émises et attribuer le temps
+     * d'écriture à la phase {@link Phase#WRITE} plutôt qu'à la génération en cours.
+     * @param emitter émetteur à mesurer
+     * @return émetteur mesuré
+     */
+    public Emitter measure(Emitter emitter) {
+        return new Emitter() {
+            @Override
+            public void emit(Program program) {
+                addInstructions(program.size());
+                write(() -> emitter.emit(program));
+            }
+
+            @Override
+            public void flush() {
+                write(emitter::flush);
+            }
+        };
+    }
+
+    /**
+     * Exécute une écriture dans la phase {@link Phase#WRITE}, en suspendant la génération.
+     * @param action écriture à mesurer
+     */
+    private void write(Runnable action) {
+        boolean inCodegen = starts.containsKey(Phase.CODEGEN);
+        if (inCodegen) end(Phase.CODEGEN);
+        begin(Phase.WRITE);
+        try {
+            action.run();
+        } finally {
+            end(Phase.WRITE);
+            if (inCodegen) begin(Phase.CODEGEN);
+        }
+    }
+
+    /**
+     * Convertit le rapport en JSON.
+     * @return objet JSON sur une ligne
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{\"source\":\"");
+        for (char c : source.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append("\",\"phases\":{");
+        long[] sum = new long[3];
+        boolean first = true;
+        for (Map.Entry<Phase, long[]> entry : totals.entrySet()) {
+            long[] total = entry.getValue();
+            if (!first) json.append(',');
+            first = false;
+            json.append('"').append(entry.getKey().name().toLowerCase()).append("\":")
+                    .append("{\"wallNanos\":").append(total[0])
+                    .append(",\"cpuNanos\":").append(total[1])
+                    .append(",\"allocatedBytes\":").append(total[2]).append('}');
+            for (int i = 0; i < sum.length; i++) {
+                sum[i] += total[i];
+            }
+        }
+        json.append("},\"total\":{\"wallNanos\":").append(sum[0])
+                .append(",\"cpuNanos\":").append(sum[1])
+                .append(",\"allocatedBytes\":").append(sum[2]).append('}')
+                .append(",\"tokens\":").append(tokens)
+                .append(",\"nodes\":").append(nodes)
+                .append(",\"instructions\":").append(instructions)
+                .append('}');
+        return json.toString();
+    }
+
+    /**
+     * Écrit le rapport JSON dans un fichier.
+     * @param output fichier de sortie
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    public void write(Path output) throws IOException {
+        Files.write(output, (toJson() + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,359 @@
+import Asm.WriterEmitter;
+import org.antlr.v4.runtime.CharStreams;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.io.OutputStreamWriter;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serveur de compilation résident.
+ * <p>
+ * La JVM reste démarrée entre les requêtes : les classes chargées, le code compilé par le JIT
+ * et les caches DFA d'ANTLR (partagés statiquement par toutes les instances de
+ * {@link grammarTCLLexer} et {@link grammarTCLParser}) sont réutilisés d'une compilation à l'autre.
+ * <p>
+ * Protocole ligne par ligne, sur l'entrée standard ou sur une socket Unix :
+ * <pre>
+ * requête : id fichier-source [fichier-sortie]
+ * réponse : id OK durée-µs fichier-sortie         (si une sortie est demandée)
+ *           id OK durée-µs taille                  (suivie du texte assembleur, taille en octets UTF-8)
+ *           id ERR durée-µs message
+ * </pre>
+ * Les requêtes sont traitées en parallèle, les réponses peuvent donc arriver dans le désordre :
+ * l'identifiant choisi par le client permet de les associer.
+ */
+public class CompileServer {
+    private final Compiler compiler;
+    private final ExecutorService executor = newExecutor();
+
+    /**
+     * Programme compilé au démarrage pour préchauffer les caches et le JIT.
+     */
+    private static final String WARMUP_SOURCE =
+            "int f(int a, int b) {\n"
+            + "    int c = a * b;\n"
+            + "    return c + a;\n"
+            + "}\n"
+            + "int main() {\n"
+            + "    int x = 3;\n"
+            + "    int y = f(x, 4);\n"
+            + "    if (x < y) { x = x + 1; } else { x = x - 1; }\n"
+            + "    while (x < 10) { x = x + 1; }\n"
+            + "    return y;\n"
+            + "}\n";
+
+    /**
+     * Constructeur
+     * @param compiler chaîne de compilation partagée par toutes les requêtes
+     */
+    public CompileServer(Compiler compiler) {
+        this.compiler = compiler;
+    }
+
+    /**
+     * Crée l'exécuteur des requêtes : un thread virtuel par requête si la JVM les fournit
+     * (Java 21 et plus), sinon un pool de threads classiques réutilisés.
+     *
+     * @return l'exécuteur des requêtes
+     */
+    private static ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * Compile plusieurs fois un petit programme pour charger les classes,
+     * remplir les caches DFA et déclencher la compilation JIT des visiteurs.
+     *
+     * @param iterations nombre de compilations
+     */
+    public void warmUp(int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            compiler.compile(CharStreams.fromString(WARMUP_SOURCE));
+        }
+    }
+
+    /**
+     * Traite les requêtes lues sur un flux jusqu'à sa fermeture, puis attend
+     * que toutes les réponses aient été écrites.
+     *
+     * @param in flux des requêtes
+     * @param out flux des réponses
+     * @throws IOException en cas d'erreur de lecture
+     */
+    public void serve(InputStream in, OutputStream out) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        PendingRequests pending = new PendingRequests();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String request = line.trim();
+            if (request.isEmpty()) continue;
+            pending.start();
+            executor.execute(() -> {
+                Throwable failure = null;
+                try {
+                    reply(writer, handle(request));
+                } catch (RuntimeException | Error e) {
+                    failure = e;
+                } finally {
+                    pending.finish(failure);
+                }
+            });
+        }
+        Throwable failure;
+        try {
+            failure = pending.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Serveur interrompu", e);
+        }
+        if (failure != null) {
+            throw new IOException(failure);
+        }
+    }
+
+    /**
+     * Requêtes d'une connexion dont la réponse n'est pas encore écrite. Seul leur nombre est
+     * conservé : une connexion qui reste ouverte ne retient rien des requêtes déjà servies.
+     */
+    private static final class PendingRequests {
+        private int count = 0;
+        private Throwable failure = null;
+
+        /**
+         * Compte une requête soumise.
+         */
+        synchronized void start() {
+            count++;
+        }
+
+        /**
+         * Décompte une requête terminée.
+         * @param failure erreur levée en la traitant, ou null
+         */
+        synchronized void finish(Throwable failure) {
+            if (this.failure == null) {
+                this.failure = failure;
+            }
+            if (--count == 0) {
+                notifyAll();
+            }
+        }
+
+        /**
+         * Attend que toutes les requêtes soumises soient terminées.
+         * @return la première erreur levée en traitant une requête, ou null
+         * @throws InterruptedException si l'attente est interrompue
+         */
+        synchronized Throwable await() throws InterruptedException {
+            while (count > 0) {
+                wait();
+            }
+            return failure;
+        }
+    }
+
+    /**
+     * Écoute sur une socket Unix ; chaque connexion est servie par {@link #serve}.
+     *
+     * @param socketPath chemin de la socket
+     * @throws IOException en cas d'erreur réseau
+     */
+    public void listen(Path socketPath) throws IOException {
+        Files.deleteIfExists(socketPath);
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socketPath));
+            while (true) {
+                SocketChannel client = server.accept();
+                executor.execute(() -> {
+                    try (client) {
+                        serve(inputStream(client), outputStream(client));
+                    } catch (IOException e) {
+                        System.err.println("Connexion fermée : " + e);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Flux de lecture sur une socket. Contrairement à Channels.newInputStream, une lecture
+     * bloquée n'empêche pas les autres threads d'écrire les réponses sur la même socket.
+     *
+     * @param channel socket du client
+     * @return flux de lecture
+     */
+    private static InputStream inputStream(SocketChannel channel) {
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                byte[] b = new byte[1];
+                return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return channel.read(ByteBuffer.wrap(b, off, len));
+            }
+        };
+    }
+
+    /**
+     * Flux d'écriture sur une socket, indépendant des lectures en cours.
+     *
+     * @param channel socket du client
+     * @return flux d'écriture
+     */
+    private static OutputStream outputStream(SocketChannel channel) {
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] { (byte) b }, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        };
+    }
+
+    /**
+     * Attend la fin des requêtes en cours puis arrête l'exécuteur.
+     *
+     * @throws InterruptedException si l'attente est interrompue
+     */
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Compile le fichier désigné par une requête.
+     *
+     * @param request ligne de requête : id fichier-source [fichier-sortie]
+     * @return la réponse complète, terminée par un saut de ligne
+     */
+    private String handle(String request) {
+        Trace.DRIVER.log(request);
+        String[] parts = request.split("\\s+");
+        String id = parts[0];
+        long start = System.nanoTime();
+        try {
+            if (parts.length < 2 || parts.length > 3) {
+                throw new IllegalArgumentException("requête invalide, attendu : id fichier-source [fichier-sortie]");
+            }
+            Path input = Paths.get(parts[1]);
+            if (parts.length == 3) {
+                compiler.compileFile(input, Paths.get(parts[2]));
+                return id + " OK " + elapsedMicros(start) + " " + parts[2] + "\n";
+            }
+            StringWriter asmOutput = new StringWriter();
+            compiler.compile(compiler.open(input), new WriterEmitter(asmOutput));
+            String asm = asmOutput.toString();
+            return id + " OK " + elapsedMicros(start) + " " + asm.getBytes(StandardCharsets.UTF_8).length + "\n" + asm;
+        } catch (Exception | StackOverflowError e) {
+            return id + " ERR " + elapsedMicros(start) + " " + String.valueOf(e).replace('\n', ' ') + "\n";
+        }
+    }
+
+    /**
+     * Écrit une réponse d'un seul bloc pour ne pas mélanger les réponses concurrentes.
+     *
+     * @param writer flux des réponses
+     * @param response réponse à écrire
+     */
+    private static void reply(Writer writer, String response) {
+        synchronized (writer) {
+            try {
+                writer.write(response);
+                writer.flush();
+            } catch (IOException e) {
+                System.err.println("Réponse perdue : " + e);
+            }
+        }
+    }
+
+    /**
+     * Durée écoulée depuis un instant donné.
+     *
+     * @param start instant de départ (System.nanoTime)
+     * @return durée en microsecondes
+     */
+    private static long elapsedMicros(long start) {
+        return (System.nanoTime() - start) / 1000;
+    }
+
+    /**
+     * Point d'entrée du mode serveur : --server [--socket chemin] [--fast-parse] [--incremental] [--cache répertoire] [--report].
+     * La sortie standard est réservée aux réponses : toute autre écriture y est redirigée
+     * vers la sortie d'erreur.
+     *
+     * @param args arguments de la ligne de commande
+     * @throws Exception en cas d'erreur d'entrée/sortie ou d'interruption
+     */
+    public static void run(String[] args) throws Exception {
+        PrintStream responses = System.out;
+        System.setOut(System.err);
+
+        Compiler compiler = new Compiler();
+        Path socketPath = null;
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--socket":
+                    socketPath = Paths.get(args[++i]);
+                    break;
+                case "--fast-parse":
+                    compiler.setFastParse(true);
+                    break;
+                case "--incremental":
+                    compiler.setIncrementalTyping(true);
+                    break;
+                case "--cache":
+                    compiler.setCache(new FunctionCache(Paths.get(args[++i])));
+                    break;
+                case "--report":
+                    compiler.setReports(true);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Option inconnue : " + args[i]);
+            }
+        }
+
+        CompileServer server = new CompileServer(compiler);
+        server.warmUp(200);
+        if (socketPath != null) {
+            System.err.println("Serveur de compilation en écoute sur " + socketPath);
+            server.listen(socketPath);
+        } else {
+            server.serve(System.in, responses);
+            server.shutdown();
+            System.err.println("Analyses SLL : " + compiler.getSllParses() + ", replis LL : " + compiler.getLlFallbacks());
+        }
+    }
+}
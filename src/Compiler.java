@@ -0,0 +1,619 @@
+import Asm.Emitter;
+import Asm.ObjectFile;
+import Asm.PackedEmitter;
+import Asm.PackedProgram;
+import Asm.Program;
+import Asm.WriterEmitter;
+import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Chaîne de compilation d'un programme TCL : analyse lexicale, analyse syntaxique,
+ * typage puis génération du code assembleur.
+ * <p>
+ * Chaque appel construit son propre lexer, parser, {@link TyperVisitor} et {@link CodeGenerator} :
+ * une même instance peut donc être utilisée par plusieurs threads en parallèle.
+ */
+public class Compiler {
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+    /**
+     * Nombre de fichiers dont les résultats du typage incrémental sont conservés : au-delà, ceux
+     * du fichier compilé le moins récemment sont oubliés (il sera re-typé entièrement).
+     */
+    private static final int MAX_TYPING_HISTORIES = 64;
+    private boolean fastParse = false;
+    private boolean parallelTyping = false;
+    private boolean incrementalTyping = false;
+    private final Map<String, TypingHistory> typingHistories = Collections.synchronizedMap(
+            new LinkedHashMap<String, TypingHistory>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, TypingHistory> eldest) {
+                    return size() > MAX_TYPING_HISTORIES;
+                }
+            });
+    private FunctionCache cache = null;
+    private boolean reports = false;
+    private boolean objectOutput = false;
+    private final AtomicLong sllParses = new AtomicLong();
+    private final AtomicLong llFallbacks = new AtomicLong();
+    private static final AtomicLong temporaryFiles = new AtomicLong();
+
+    /**
+     * Résultat de l'analyse syntaxique : l'arbre et le parser qui l'a produit.
+     */
+    public static class ParseResult {
+        private final grammarTCLParser parser;
+        private final grammarTCLParser.MainContext tree;
+
+        /**
+         * Constructeur
+         * @param parser parser ayant produit l'arbre
+         * @param tree arbre syntaxique
+         */
+        public ParseResult(grammarTCLParser parser, grammarTCLParser.MainContext tree) {
+            this.parser = parser;
+            this.tree = tree;
+        }
+
+        /**
+         * Getter du parser
+         * @return parser ayant produit l'arbre
+         */
+        public grammarTCLParser getParser() {
+            return parser;
+        }
+
+        /**
+         * Getter de l'arbre syntaxique
+         * @return racine de l'arbre
+         */
+        public grammarTCLParser.MainContext getTree() {
+            return tree;
+        }
+
+        /**
+         * Getter du nombre d'erreurs de syntaxe rencontrées
+         * @return nombre d'erreurs de syntaxe
+         */
+        public int getSyntaxErrors() {
+            return parser.getNumberOfSyntaxErrors();
+        }
+    }
+
+    /**
+     * Active l'analyse syntaxique rapide en deux étapes (voir {@link #parse}).
+     * @param fastParse true pour tenter d'abord une prédiction SLL
+     */
+    public void setFastParse(boolean fastParse) {
+        this.fastParse = fastParse;
+    }
+
+    /**
+     * Active le typage incrémental : les résultats du typage de chaque fichier sont conservés,
+     * et la compilation suivante du même fichier ne re-type que les fonctions modifiées et les
+     * appelantes des fonctions dont la signature a changé (voir {@link TyperVisitor#setHistory}).
+     * Les sources sans nom (chaînes) sont typés entièrement. Seuls les résultats des derniers
+     * fichiers compilés sont gardés, et ceux d'un fichier dont le typage échoue sont oubliés.
+     * @param incrementalTyping true pour conserver et réutiliser les résultats du typage
+     */
+    public void setIncrementalTyping(boolean incrementalTyping) {
+        this.incrementalTyping = incrementalTyping;
+    }
+
+    /**
+     * Active le typage des corps de fonctions en parallèle (voir {@link TyperVisitor#setParallel(boolean)}).
+     * @param parallelTyping true pour typer les corps de fonctions en parallèle
+     */
+    public void setParallelTyping(boolean parallelTyping) {
+        this.parallelTyping = parallelTyping;
+    }
+
+    /**
+     * Active le cache incrémental par fonction, partagé par le typage et la génération.
+     * @param cache cache des fonctions (null pour le désactiver)
+     */
+    public void setCache(FunctionCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Getter du cache incrémental par fonction
+     * @return cache des fonctions, ou null s'il est désactivé
+     */
+    public FunctionCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Active l'écriture d'un rapport JSON par compilation de fichier (voir {@link CompileReport}),
+     * à côté du fichier assembleur produit.
+     * @param reports true pour écrire les rapports
+     */
+    public void setReports(boolean reports) {
+        this.reports = reports;
+    }
+
+    /**
+     * Active l'écriture d'un fichier objet (voir {@link ObjectFile}) par compilation de fichier,
+     * à côté du fichier assembleur produit, avec l'extension .tclo.
+     * @param objectOutput true pour écrire les fichiers objets
+     */
+    public void setObjectOutput(boolean objectOutput) {
+        this.objectOutput = objectOutput;
+    }
+
+    /**
+     * Getter du nombre d'analyses réussies directement en prédiction SLL
+     * @return nombre d'analyses SLL réussies
+     */
+    public long getSllParses() {
+        return sllParses.get();
+    }
+
+    /**
+     * Getter du nombre d'analyses qui ont dû être refaites en prédiction LL complète
+     * @return nombre de replis sur LL
+     */
+    public long getLlFallbacks() {
+        return llFallbacks.get();
+    }
+
+    /**
+     * Ouvre un fichier source comme flux de caractères.
+     * <p>
+     * Le fichier est lu par blocs à travers un {@link FileChannel} et décodé directement dans
+     * le tampon du {@link CharStream} : aucune copie intermédiaire (tableau d'octets complet,
+     * String) n'est conservée, le tas ne contient donc qu'une copie du source pendant l'analyse.
+     *
+     * @param path fichier source (UTF-8)
+     * @return flux de caractères du fichier
+     * @throws IOException en cas d'erreur de lecture
+     */
+    public CharStream open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            return CharStreams.fromChannel(channel, StandardCharsets.UTF_8, READ_BUFFER_SIZE,
+                    CodingErrorAction.REPLACE, path.toString(), size);
+        }
+    }
+
+    /**
+     * Analyse lexicale et syntaxique du code source.
+     * <p>
+     * En mode rapide, le parser essaie d'abord la prédiction SLL, beaucoup moins coûteuse,
+     * en abandonnant à la première erreur. Si elle échoue (erreur de syntaxe réelle ou
+     * ambiguïté que SLL ne sait pas trancher), le source est ré-analysé en LL complet
+     * avec la stratégie d'erreur par défaut : le résultat est alors identique au mode normal.
+     *
+     * @param input flux de caractères du code source
+     * @return l'arbre syntaxique et son parser
+     */
+    public ParseResult parse(CharStream input) {
+        return parse(input, null);
+    }
+
+    /**
+     * Analyse lexicale et syntaxique du code source, mesurée séparément si un rapport est fourni :
+     * les tokens sont alors tous produits avant l'analyse syntaxique.
+     *
+     * @param input flux de caractères du code source
+     * @param report rapport de compilation (null si aucune mesure)
+     * @return l'arbre syntaxique et son parser
+     */
+    public ParseResult parse(CharStream input, CompileReport report) {
+        grammarTCLLexer lexer = new grammarTCLLexer(input);
+        CommonTokenStream tokens = new CommonTokenStream(lexer);
+        if (report == null) {
+            return parseTokens(input, tokens);
+        }
+        report.begin(CompileReport.Phase.LEX);
+        tokens.fill();
+        report.end(CompileReport.Phase.LEX);
+        report.setTokens(tokens.size());
+        report.begin(CompileReport.Phase.PARSE);
+        ParseResult parsed = parseTokens(input, tokens);
+        report.end(CompileReport.Phase.PARSE);
+        report.countNodes(parsed.getTree());
+        return parsed;
+    }
+
+    /**
+     * Analyse syntaxique d'un flux de tokens, en une ou deux étapes selon le mode.
+     *
+     * @param input flux de caractères du code source (pour les traces)
+     * @param tokens flux de tokens
+     * @return l'arbre syntaxique et son parser
+     */
+    private ParseResult parseTokens(CharStream input, CommonTokenStream tokens) {
+        grammarTCLParser parser = new grammarTCLParser(tokens);
+        if (!fastParse) {
+            return new ParseResult(parser, parser.main());
+        }
+
+        parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        parser.removeErrorListeners();
+        parser.setErrorHandler(new BailErrorStrategy());
+        try {
+            grammarTCLParser.MainContext tree = parser.main();
+            sllParses.incrementAndGet();
+            return new ParseResult(parser, tree);
+        } catch (ParseCancellationException e) {
+            llFallbacks.incrementAndGet();
+            if (Trace.PARSE.isEnabled()) {
+                Trace.PARSE.log("Repli en prédiction LL : " + input.getSourceName());
+            }
+            parser.reset(); // Revient au début du flux de tokens
+            parser.addErrorListener(ConsoleErrorListener.INSTANCE);
+            parser.setErrorHandler(new DefaultErrorStrategy());
+            parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+            return new ParseResult(parser, parser.main());
+        }
+    }
+
+    /**
+     * Vérifie et infère les types de l'arbre syntaxique.
+     *
+     * @param tree racine de l'arbre
+     * @return le visiteur de typage, contenant les scopes calculés
+     */
+    public TyperVisitor type(grammarTCLParser.MainContext tree) {
+        return type(tree, null);
+    }
+
+    /**
+     * Vérifie et infère les types de l'arbre syntaxique, en mesurant la phase si un rapport est fourni.
+     *
+     * @param tree racine de l'arbre
+     * @param report rapport de compilation (null si aucune mesure)
+     * @return le visiteur de typage, contenant les scopes calculés
+     */
+    public TyperVisitor type(grammarTCLParser.MainContext tree, CompileReport report) {
+        TyperVisitor visitor = new TyperVisitor();
+        visitor.setCache(cache);
+        visitor.setParallel(parallelTyping);
+        CompileReport.WorkerCounters workers = report != null && parallelTyping ? new CompileReport.WorkerCounters() : null;
+        visitor.setWorkerCounters(workers);
+        String sourceName = tree.getStart().getInputStream().getSourceName();
+        boolean incremental = incrementalTyping && !IntStream.UNKNOWN_SOURCE_NAME.equals(sourceName);
+        if (incremental) {
+            visitor.setHistory(typingHistories.getOrDefault(sourceName, new TypingHistory()));
+        }
+        if (report != null) report.begin(CompileReport.Phase.TYPE);
+        try {
+            visitor.visitMain(tree);
+        } catch (RuntimeException | StackOverflowError e) {
+            if (incremental) {
+                typingHistories.remove(sourceName); // Le source a changé, l'ancien historique ne servira plus
+            }
+            throw e;
+        }
+        if (report != null) report.end(CompileReport.Phase.TYPE);
+        if (workers != null) report.addWorkers(CompileReport.Phase.TYPE, workers);
+        if (incremental) {
+            typingHistories.put(sourceName, visitor.getHistory());
+        }
+        return visitor;
+    }
+
+    /**
+     * Génère le programme assembleur correspondant à l'arbre syntaxique, sans résultats de typage :
+     * les variables sont retrouvées par leur nom.
+     *
+     * @param tree racine de l'arbre
+     * @return le programme généré
+     */
+    public Program generate(grammarTCLParser.MainContext tree) {
+        return generate(tree, (TypedTree) null);
+    }
+
+    /**
+     * Génère le programme assembleur correspondant à l'arbre syntaxique typé.
+     *
+     * @param tree racine de l'arbre
+     * @param typedTree résultats du typage de l'arbre (null si l'arbre n'a pas été typé)
+     * @return le programme généré
+     */
+    public Program generate(grammarTCLParser.MainContext tree, TypedTree typedTree) {
+        return newCodeGenerator(typedTree).visitMain(tree);
+    }
+
+    /**
+     * Génère le programme sous forme compacte (voir {@link PackedProgram}) : chaque fonction
+     * est codée dès qu'elle est générée, et seul le programme compact reste en mémoire.
+     *
+     * @param tree racine de l'arbre
+     * @param typedTree résultats du typage de l'arbre (null si l'arbre n'a pas été typé)
+     * @param report rapport de compilation (null si aucune mesure)
+     * @return le programme généré
+     */
+    public PackedProgram generatePacked(grammarTCLParser.MainContext tree, TypedTree typedTree, CompileReport report) {
+        PackedEmitter emitter = new PackedEmitter();
+        generate(tree, typedTree, emitter, report);
+        return emitter.getProgram();
+    }
+
+    /**
+     * Génère le code de l'arbre syntaxique en l'émettant fonction par fonction,
+     * sans construire le programme complet en mémoire.
+     *
+     * @param tree racine de l'arbre
+     * @param emitter destination du code généré
+     */
+    public void generate(grammarTCLParser.MainContext tree, Emitter emitter) {
+        generate(tree, emitter, null);
+    }
+
+    /**
+     * Génère et émet le code de l'arbre syntaxique ; si un rapport est fourni, le temps passé
+     * dans l'émetteur est compté dans la phase d'écriture et non dans la génération.
+     *
+     * @param tree racine de l'arbre
+     * @param emitter destination du code généré
+     * @param report rapport de compilation (null si aucune mesure)
+     */
+    public void generate(grammarTCLParser.MainContext tree, Emitter emitter, CompileReport report) {
+        generate(tree, null, emitter, report);
+    }
+
+    /**
+     * Génère et émet le code de l'arbre syntaxique typé ; si un rapport est fourni, le temps passé
+     * dans l'émetteur est compté dans la phase d'écriture et non dans la génération.
+     *
+     * @param tree racine de l'arbre
+     * @param typedTree résultats du typage de l'arbre (null si l'arbre n'a pas été typé)
+     * @param emitter destination du code généré
+     * @param report rapport de compilation (null si aucune mesure)
+     */
+    public void generate(grammarTCLParser.MainContext tree, TypedTree typedTree, Emitter emitter, CompileReport report) {
+        CodeGenerator codeGenerator = newCodeGenerator(typedTree);
+        if (report == null) {
+            codeGenerator.setEmitter(emitter);
+            codeGenerator.visitMain(tree);
+            return;
+        }
+        codeGenerator.setEmitter(report.measure(emitter));
+        report.begin(CompileReport.Phase.CODEGEN);
+        codeGenerator.visitMain(tree);
+        report.end(CompileReport.Phase.CODEGEN);
+    }
+
+    /**
+     * Crée un générateur de code.
+     *
+     * @param typedTree résultats du typage de l'arbre à générer (null si l'arbre n'a pas été typé)
+     * @return le générateur
+     */
+    private CodeGenerator newCodeGenerator(TypedTree typedTree) {
+        CodeGenerator codeGenerator = new CodeGenerator(typedTree);
+        codeGenerator.setCache(cache);
+        return codeGenerator;
+    }
+
+    /**
+     * Écrit le programme dans un fichier, une instruction à la suite de l'autre.
+     *
+     * @param program programme à écrire
+     * @param output fichier de sortie
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    public void write(Program program, Path output) throws IOException {
+        writeOutput(output, writer -> new WriterEmitter(writer).emit(program)); // Par blocs, sans texte complet en mémoire
+    }
+
+    /**
+     * Ecriture du contenu d'un fichier de sortie.
+     */
+    public interface OutputWriter {
+        /**
+         * Ecrit le contenu.
+         * @param writer destination du texte
+         * @throws IOException en cas d'erreur d'écriture
+         */
+        void write(Writer writer) throws IOException;
+    }
+
+    /**
+     * Écrit un fichier de sortie dans un fichier temporaire du même répertoire, renommé sur la
+     * sortie une fois complet : une génération qui échoue en cours d'écriture ne laisse pas de
+     * fichier tronqué à la place de la sortie, et l'ancienne sortie reste intacte.
+     *
+     * @param output fichier de sortie
+     * @param content écriture du contenu
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    public static void writeOutput(Path output, OutputWriter content) throws IOException {
+        Path temporary = temporaryPath(output);
+        try {
+            try (Writer writer = Files.newBufferedWriter(temporary, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                content.write(writer);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            Files.move(temporary, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Écrit le texte assembleur d'un programme compact et son fichier objet (voir
+     * {@link #objectPath(Path)}), chacun dans un fichier temporaire comme {@link #writeOutput}.
+     * Les deux ne sont renommés qu'une fois complets : une erreur d'écriture ne laisse ni
+     * fichier tronqué, ni fichier objet qui ne corresponde pas au texte assembleur.
+     *
+     * @param output fichier assembleur
+     * @param program programme à écrire
+     * @param sourceName nom du fichier source, enregistré dans le fichier objet
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    public static void writeOutputs(Path output, PackedProgram program, String sourceName) throws IOException {
+        Path object = objectPath(output);
+        Path temporary = temporaryPath(output);
+        Path temporaryObject = temporaryPath(object);
+        try {
+            try (Writer writer = Files.newBufferedWriter(temporary, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                new WriterEmitter(writer).emit(program);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            try (OutputStream out = Files.newOutputStream(temporaryObject, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                ObjectFile.write(program, sourceName, out);
+            }
+            Files.move(temporaryObject, object, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.move(temporary, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+            Files.deleteIfExists(temporaryObject);
+        }
+    }
+
+    /**
+     * Fichier temporaire à côté d'un fichier de sortie, propre au processus et à l'appel. Créé
+     * avec CREATE_NEW plutôt que par Files.createTempFile (mode 0600), il reçoit les permissions
+     * par défaut, que le renommage transmet à la sortie.
+     *
+     * @param output fichier de sortie
+     * @return chemin du fichier temporaire, qui n'existe pas encore
+     */
+    static Path temporaryPath(Path output) {
+        return output.resolveSibling(output.getFileName() + "." + ProcessHandle.current().pid()
+                + "-" + temporaryFiles.incrementAndGet() + ".tmp");
+    }
+
+    /**
+     * Compile un code source complet : analyse, typage et génération.
+     *
+     * @param input flux de caractères du code source
+     * @return le programme généré
+     * @throws IllegalArgumentException si le source contient des erreurs de syntaxe
+     */
+    public Program compile(CharStream input) {
+        grammarTCLParser.MainContext tree = parseChecked(input, null);
+        return generate(tree, type(tree).getTypedTree());
+    }
+
+    /**
+     * Compile un code source en émettant le code fonction par fonction.
+     *
+     * @param input flux de caractères du code source
+     * @param emitter destination du code généré
+     * @throws IllegalArgumentException si le source contient des erreurs de syntaxe
+     */
+    public void compile(CharStream input, Emitter emitter) {
+        grammarTCLParser.MainContext tree = parseChecked(input, null);
+        generate(tree, type(tree).getTypedTree(), emitter, null);
+    }
+
+    /**
+     * Analyse et type un code source, sans générer de code.
+     *
+     * @param input flux de caractères du code source
+     * @return l'arbre syntaxique typé
+     * @throws IllegalArgumentException si le source contient des erreurs de syntaxe
+     */
+    public grammarTCLParser.MainContext check(CharStream input) {
+        return check(input, null);
+    }
+
+    /**
+     * Analyse et type un code source en mesurant chaque phase si un rapport est fourni.
+     *
+     * @param input flux de caractères du code source
+     * @param report rapport de compilation (null si aucune mesure)
+     * @return l'arbre syntaxique typé
+     * @throws IllegalArgumentException si le source contient des erreurs de syntaxe
+     */
+    public grammarTCLParser.MainContext check(CharStream input, CompileReport report) {
+        grammarTCLParser.MainContext tree = parseChecked(input, report);
+        type(tree, report);
+        return tree;
+    }
+
+    /**
+     * Analyse un code source et rejette les erreurs de syntaxe.
+     *
+     * @param input flux de caractères du code source
+     * @param report rapport de compilation (null si aucune mesure)
+     * @return l'arbre syntaxique
+     * @throws IllegalArgumentException si le source contient des erreurs de syntaxe
+     */
+    private grammarTCLParser.MainContext parseChecked(CharStream input, CompileReport report) {
+        ParseResult parsed = parse(input, report);
+        if (parsed.getSyntaxErrors() > 0) {
+            throw new IllegalArgumentException(parsed.getSyntaxErrors() + " erreur(s) de syntaxe");
+        }
+        return parsed.getTree();
+    }
+
+    /**
+     * Compile un fichier source TCL vers un fichier assembleur. Si les rapports sont activés,
+     * le rapport JSON est écrit à côté, avec l'extension .json ; si les fichiers objets sont
+     * activés, le fichier objet aussi, avec l'extension .tclo.
+     *
+     * @param input fichier source
+     * @param output fichier assembleur à produire
+     * @throws IOException en cas d'erreur de lecture ou d'écriture
+     * @throws IllegalArgumentException si le source contient des erreurs de syntaxe
+     */
+    public void compileFile(Path input, Path output) throws IOException {
+        CompileReport report = reports ? new CompileReport(input.toString()) : null;
+        if (report != null) report.begin(CompileReport.Phase.READ);
+        CharStream source = open(input);
+        if (report != null) report.end(CompileReport.Phase.READ);
+        grammarTCLParser.MainContext tree = parseChecked(source, report);
+        TypedTree typedTree = type(tree, report).getTypedTree();
+        if (objectOutput) {
+            // Le programme est gardé sous forme compacte pour écrire les deux fichiers
+            PackedProgram program = generatePacked(tree, typedTree, report);
+            if (report != null) report.begin(CompileReport.Phase.WRITE);
+            writeOutputs(output, program, input.toString());
+            if (report != null) report.end(CompileReport.Phase.WRITE);
+        } else {
+            writeOutput(output, writer -> generate(tree, typedTree, new WriterEmitter(writer), report));
+        }
+        if (report != null) {
+            report.write(reportPath(output));
+        }
+    }
+
+    /**
+     * Chemin du rapport JSON associé à un fichier assembleur : même nom, extension .json.
+     *
+     * @param output fichier assembleur
+     * @return fichier du rapport
+     */
+    public static Path reportPath(Path output) {
+        String name = output.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return output.resolveSibling((dot > 0 ? name.substring(0, dot) : name) + ".json");
+    }
+
+    /**
+     * Chemin du fichier objet associé à un fichier assembleur : même nom, extension .tclo.
+     *
+     * @param output fichier assembleur
+     * @return fichier objet
+     */
+    public static Path objectPath(Path output) {
+        String name = output.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return output.resolveSibling((dot > 0 ? name.substring(0, dot) : name) + ".tclo");
+    }
+}
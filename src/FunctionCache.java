@@ -0,0 +1,553 @@
+import Asm.*;
+import Type.ArrayType;
+import Type.FunctionType;
+import Type.PrimitiveType;
+import Type.Type;
+import Type.UnknownType;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.TerminalNode;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache sur disque des résultats de compilation par fonction.
+ * <p>
+ * Chaque entrée est adressée par le hash SHA-256 de son contenu d'entrée :
+ * <ul>
+ * <li>signature typée d'une fonction : tokens du decl_fct, signatures des fonctions appelées
+ * et version du compilateur ;</li>
+ * <li>code généré d'une fonction : tokens du decl_fct, état du générateur à l'entrée de la
+ * fonction (compteurs de registres et de labels, empreinte des registres déjà associés
+ * à des noms) et version du compilateur.</li>
+ * </ul>
+ * Le générateur numérote registres et labels sur tout le programme : le code d'une fonction
+ * n'est donc réutilisable que si tout ce qui la précède a produit le même état.
+ * La signature, elle, ne dépend que de la fonction et de ses appelées.
+ */
+public class FunctionCache {
+    /**
+     * Version du format et du code généré : à incrémenter à chaque changement du typage
+     * ou de la génération pour invalider les entrées existantes.
+     */
+    public static final String COMPILER_VERSION = "4";
+
+    private static final byte TYPE_INT = 0, TYPE_BOOL = 1, TYPE_ARRAY = 2, TYPE_AUTO = 3;
+    private static final byte INSTR_UAL = 0, INSTR_UALI = 1, INSTR_MEM = 2, INSTR_IO = 3,
+            INSTR_COND_JUMP = 4, INSTR_JUMP_CALL = 5, INSTR_RET = 6, INSTR_STOP = 7, INSTR_LABEL = 8,
+            INSTR_BRANCH_ZERO = 9, INSTR_FUNCTION_ENTRY = 10;
+
+    private final Path directory;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Code généré pour une fonction et état du générateur après cette fonction.
+     */
+    public static class Fragment {
+        private final Program program;
+        private final int nextRegister;
+        private final int nextLabel;
+        private final Map<String, Integer> registers;
+
+        /**
+         * Constructeur
+         * @param program code de la fonction
+         * @param nextRegister prochain registre libre après la fonction
+         * @param nextLabel prochain numéro de label après la fonction
+         * @param registers registres associés à des noms par la fonction dans le scope global, dans l'ordre
+         */
+        public Fragment(Program program, int nextRegister, int nextLabel, Map<String, Integer> registers) {
+            this.program = program;
+            this.nextRegister = nextRegister;
+            this.nextLabel = nextLabel;
+            this.registers = registers;
+        }
+
+        /**
+         * Getter du code de la fonction
+         * @return code de la fonction
+         */
+        public Program getProgram() {
+            return program;
+        }
+
+        /**
+         * Getter du prochain registre libre après la fonction
+         * @return numéro de registre
+         */
+        public int getNextRegister() {
+            return nextRegister;
+        }
+
+        /**
+         * Getter du prochain numéro de label après la fonction
+         * @return numéro de label
+         */
+        public int getNextLabel() {
+            return nextLabel;
+        }
+
+        /**
+         * Getter des registres associés à des noms par la fonction
+         * @return noms et registres
+         */
+        public Map<String, Integer> getRegisters() {
+            return registers;
+        }
+    }
+
+    /**
+     * Constructeur
+     * @param directory répertoire du cache (créé si besoin)
+     * @throws IOException si le répertoire ne peut pas être créé
+     */
+    public FunctionCache(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * Getter du nombre d'entrées trouvées dans le cache
+     * @return nombre de succès
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Getter du nombre d'entrées absentes du cache
+     * @return nombre d'échecs
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Clé de la signature typée d'une fonction.
+     * @param ctx déclaration de la fonction
+     * @param calleeSignatures signatures des fonctions appelées, dans l'ordre des appels
+     * @return clé hexadécimale
+     */
+    public String signatureKey(grammarTCLParser.Decl_fctContext ctx, String calleeSignatures) {
+        return hash("sig", tokens(ctx), calleeSignatures);
+    }
+
+    /**
+     * Clé du code généré d'une fonction.
+     * @param ctx déclaration de la fonction
+     * @param nextRegister prochain registre libre à l'entrée de la fonction
+     * @param nextLabel prochain numéro de label à l'entrée de la fonction
+     * @param registersDigest empreinte des registres visibles à l'entrée de la fonction (voir {@link #chain})
+     * @return clé hexadécimale
+     */
+    public String fragmentKey(grammarTCLParser.Decl_fctContext ctx, int nextRegister, int nextLabel, String registersDigest) {
+        return hash("asm", tokens(ctx), nextRegister + ":" + nextLabel + ":" + registersDigest);
+    }
+
+    /**
+     * Empreinte d'une suite d'associations nom / registre, calculée de proche en proche
+     * pour ne pas reparcourir toutes les associations à chaque fonction.
+     * @param previous empreinte avant l'association ("" au départ)
+     * @param name nom de la variable
+     * @param register registre associé
+     * @return nouvelle empreinte
+     */
+    public static String chain(String previous, String name, int register) {
+        return hash("reg", previous, name, Integer.toString(register));
+    }
+
+    /**
+     * Description d'un type indépendante de la numérotation globale des variables de type,
+     * utilisée dans les clés du cache. Les variables sont numérotées dans l'ordre de leur
+     * première apparition : (α)->α et (α,β)->β restent distinctes de (α)->β et (α,β)->α.
+     * @param type type à décrire
+     * @return description textuelle
+     */
+    public static String describe(Type type) {
+        StringBuilder sb = new StringBuilder();
+        describe(type, new HashMap<>(), sb);
+        return sb.toString();
+    }
+
+    private static void describe(Type type, Map<UnknownType, Integer> variables, StringBuilder sb) {
+        if (type instanceof FunctionType) {
+            FunctionType function = (FunctionType) type;
+            sb.append('(');
+            for (int i = 0; i < function.getNbArgs(); i++) {
+                describe(function.getArgsType(i), variables, sb);
+                sb.append(',');
+            }
+            sb.append(")->");
+            describe(function.getReturnType(), variables, sb);
+        } else if (type instanceof ArrayType) {
+            describe(((ArrayType) type).getTabType(), variables, sb);
+            sb.append("[]");
+        } else if (type instanceof UnknownType) {
+            sb.append("auto").append(variableNumber((UnknownType) type, variables));
+        } else if (type == null) {
+            sb.append("auto");
+        } else {
+            sb.append(type);
+        }
+    }
+
+    /**
+     * Numéro d'une variable de type dans une signature, attribué à sa première apparition.
+     * @param variable variable de type
+     * @param variables numéros déjà attribués
+     * @return numéro de la variable
+     */
+    private static int variableNumber(UnknownType variable, Map<UnknownType, Integer> variables) {
+        Integer number = variables.get(variable);
+        if (number == null) {
+            number = variables.size();
+            variables.put(variable, number);
+        }
+        return number;
+    }
+
+    /**
+     * Cherche une signature dans le cache.
+     * @param key clé de la signature
+     * @return la signature, ou null si elle est absente
+     */
+    public FunctionType loadSignature(String key) {
+        try (DataInputStream in = open(key, ".sig")) {
+            if (in == null) return null;
+            Type type = readType(in);
+            hits.incrementAndGet();
+            return (FunctionType) type;
+        } catch (IOException | RuntimeException e) {
+            misses.incrementAndGet(); // Entrée illisible : elle sera réécrite
+            return null;
+        }
+    }
+
+    /**
+     * Enregistre une signature dans le cache.
+     * @param key clé de la signature
+     * @param type signature typée
+     */
+    public void storeSignature(String key, FunctionType type) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeType(out, type, new HashMap<>());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        store(key, ".sig", bytes.toByteArray());
+    }
+
+    /**
+     * Cherche le code d'une fonction dans le cache.
+     * @param key clé du code
+     * @return le code et l'état du générateur, ou null s'il est absent
+     */
+    public Fragment loadFragment(String key) {
+        try (DataInputStream in = open(key, ".frag")) {
+            if (in == null) return null;
+            int nextRegister = in.readInt();
+            int nextLabel = in.readInt();
+            Map<String, Integer> registers = new LinkedHashMap<>();
+            for (int i = in.readInt(); i > 0; i--) {
+                registers.put(in.readUTF(), in.readInt());
+            }
+            Program program = new Program();
+            for (int i = in.readInt(); i > 0; i--) {
+                program.addInstruction(readInstruction(in));
+            }
+            hits.incrementAndGet();
+            return new Fragment(program, nextRegister, nextLabel, registers);
+        } catch (IOException | RuntimeException e) {
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Enregistre le code d'une fonction dans le cache.
+     * @param key clé du code
+     * @param fragment code et état du générateur après la fonction
+     */
+    public void storeFragment(String key, Fragment fragment) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(fragment.getNextRegister());
+            out.writeInt(fragment.getNextLabel());
+            out.writeInt(fragment.getRegisters().size());
+            for (Map.Entry<String, Integer> entry : fragment.getRegisters().entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeInt(entry.getValue());
+            }
+            Program program = fragment.getProgram();
+            out.writeInt(program.size());
+            for (Instruction instr : program) {
+                writeInstruction(out, instr);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        store(key, ".frag", bytes.toByteArray());
+    }
+
+    /**
+     * Texte des tokens d'un sous-arbre, séparés pour qu'aucun découpage ne soit ambigu.
+     * @param tree sous-arbre
+     * @return texte des tokens
+     */
+    private static String tokens(ParseTree tree) {
+        StringBuilder sb = new StringBuilder();
+        appendTokens(tree, sb);
+        return sb.toString();
+    }
+
+    private static void appendTokens(ParseTree tree, StringBuilder sb) {
+        if (tree instanceof TerminalNode) {
+            sb.append(tree.getText()).append('\u0000');
+            return;
+        }
+        for (int i = 0; i < tree.getChildCount(); i++) {
+            appendTokens(tree.getChild(i), sb);
+        }
+    }
+
+    private static String hash(String kind, String... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((kind + '\u0000' + COMPILER_VERSION + '\u0000').getBytes(StandardCharsets.UTF_8));
+            for (String part : parts) {
+                digest.update(part.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0xff);
+            }
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Path path(String key, String suffix) {
+        return directory.resolve(key.substring(0, 2)).resolve(key.substring(2) + suffix);
+    }
+
+    private DataInputStream open(String key, String suffix) throws IOException {
+        try {
+            InputStream in = Files.newInputStream(path(key, suffix));
+            return new DataInputStream(new BufferedInputStream(in));
+        } catch (NoSuchFileException e) {
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Écrit une entrée de façon atomique : un fichier temporaire renommé, pour que les
+     * compilations parallèles ne lisent jamais une entrée incomplète.
+     */
+    private void store(String key, String suffix, byte[] content) {
+        Path target = path(key, suffix);
+        try {
+            Files.createDirectories(target.getParent());
+            Path tmp = Files.createTempFile(target.getParent(), "tmp", suffix);
+            Files.write(tmp, content);
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Trace.DRIVER.log("Entrée de cache non écrite : " + e);
+        }
+    }
+
+    private static void writeType(DataOutputStream out, Type type, Map<UnknownType, Integer> variables) throws IOException {
+        if (type instanceof FunctionType) {
+            FunctionType function = (FunctionType) type;
+            writeType(out, function.getReturnType(), variables);
+            out.writeInt(function.getNbArgs());
+            for (int i = 0; i < function.getNbArgs(); i++) {
+                writeType(out, function.getArgsType(i), variables);
+            }
+        } else if (type instanceof ArrayType) {
+            out.writeByte(TYPE_ARRAY);
+            writeType(out, ((ArrayType) type).getTabType(), variables);
+        } else if (type instanceof PrimitiveType) {
+            out.writeByte(((PrimitiveType) type).getType() == Type.Base.INT ? TYPE_INT : TYPE_BOOL);
+        } else {
+            // Type non résolu : son numéro dans la signature, pour retrouver au chargement
+            // une même nouvelle variable partout où il apparaît
+            out.writeByte(TYPE_AUTO);
+            out.writeInt(variableNumber((UnknownType) type, variables));
+        }
+    }
+
+    private static Type readType(DataInputStream in) throws IOException {
+        List<UnknownType> variables = new ArrayList<>();
+        Type returnType = readValueType(in, variables);
+        ArrayList<Type> args = new ArrayList<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            args.add(readValueType(in, variables));
+        }
+        return new FunctionType(returnType, args);
+    }
+
+    private static Type readValueType(DataInputStream in, List<UnknownType> variables) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case TYPE_INT:
+                return PrimitiveType.INT;
+            case TYPE_BOOL:
+                return PrimitiveType.BOOL;
+            case TYPE_ARRAY:
+                return ArrayType.of(readValueType(in, variables));
+            case TYPE_AUTO:
+                int number = in.readInt();
+                if (number == variables.size()) {
+                    variables.add(new UnknownType());
+                } else if (number > variables.size()) {
+                    throw new IllegalStateException("Variable de type inconnue dans le cache : " + number);
+                }
+                return variables.get(number);
+            default:
+                throw new IllegalStateException("Type inconnu dans le cache : " + tag);
+        }
+    }
+
+    private static void writeLabel(DataOutputStream out, String label) throws IOException {
+        out.writeBoolean(label != null);
+        if (label != null) out.writeUTF(label);
+    }
+
+    private static String readLabel(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) return null;
+        String label = in.readUTF();
+        return label.isEmpty() ? "" : label; // "" partagé : les toString comparent label == ""
+    }
+
+    private static void writeInstruction(DataOutputStream out, Instruction instr) throws IOException {
+        if (instr instanceof UAL) {
+            UAL ual = (UAL) instr;
+            out.writeByte(INSTR_UAL);
+            writeLabel(out, ual.getLabel());
+            out.writeUTF(ual.getName());
+            out.writeInt(ual.getDest());
+            out.writeInt(ual.getSr1());
+            out.writeInt(ual.getSr2());
+        } else if (instr instanceof UALi) {
+            UALi uali = (UALi) instr;
+            out.writeByte(INSTR_UALI);
+            writeLabel(out, uali.getLabel());
+            out.writeUTF(uali.getName());
+            out.writeInt(uali.getDest());
+            out.writeInt(uali.getSr());
+            out.writeInt(uali.getImm());
+        } else if (instr instanceof Mem) {
+            Mem mem = (Mem) instr;
+            out.writeByte(INSTR_MEM);
+            writeLabel(out, mem.getLabel());
+            out.writeUTF(mem.getName());
+            out.writeInt(mem.getDest());
+            out.writeInt(mem.getAddress());
+        } else if (instr instanceof IO) {
+            IO io = (IO) instr;
+            out.writeByte(INSTR_IO);
+            writeLabel(out, io.getLabel());
+            out.writeUTF(io.getName());
+            out.writeInt(io.getReg());
+        } else if (instr instanceof CondJump) {
+            CondJump jump = (CondJump) instr;
+            out.writeByte(INSTR_COND_JUMP);
+            writeLabel(out, jump.getLabel());
+            out.writeUTF(jump.getName());
+            out.writeInt(jump.getSr1());
+            out.writeInt(jump.getSr2());
+            out.writeUTF(jump.getAddress());
+        } else if (instr instanceof JumpCall) {
+            JumpCall jump = (JumpCall) instr;
+            out.writeByte(INSTR_JUMP_CALL);
+            writeLabel(out, jump.getLabel());
+            out.writeUTF(jump.getName());
+            out.writeUTF(jump.getAddress());
+        } else if (instr instanceof Ret) {
+            out.writeByte(INSTR_RET);
+            writeLabel(out, instr.getLabel());
+            out.writeInt(((Ret) instr).getReg());
+        } else if (instr instanceof Stop) {
+            out.writeByte(INSTR_STOP);
+            writeLabel(out, instr.getLabel());
+        } else if (instr instanceof FunctionEntry) {
+            List<String> parameters = ((FunctionEntry) instr).getParameters();
+            out.writeByte(INSTR_FUNCTION_ENTRY);
+            writeLabel(out, instr.getLabel());
+            out.writeInt(parameters.size());
+            for (String parameter : parameters) {
+                out.writeUTF(parameter);
+            }
+        } else if (instr instanceof Label) {
+            out.writeByte(INSTR_LABEL);
+            writeLabel(out, instr.getLabel());
+        } else if (instr instanceof BranchZero) {
+            BranchZero branch = (BranchZero) instr;
+            out.writeByte(INSTR_BRANCH_ZERO);
+            writeLabel(out, branch.getLabel());
+            out.writeInt(branch.getReg());
+            out.writeUTF(branch.getAddress());
+        } else {
+            throw new IOException("Instruction non sérialisable : " + instr.getClass().getName());
+        }
+    }
+
+    private static Instruction readInstruction(DataInputStream in) throws IOException {
+        byte tag = in.readByte();
+        String label = readLabel(in);
+        switch (tag) {
+            case INSTR_UAL:
+                return new UAL(label, UAL.Op.valueOf(in.readUTF()), in.readInt(), in.readInt(), in.readInt());
+            case INSTR_UALI:
+                return new UALi(label, UALi.Op.valueOf(in.readUTF()), in.readInt(), in.readInt(), in.readInt());
+            case INSTR_MEM:
+                return new Mem(label, Mem.Op.valueOf(in.readUTF()), in.readInt(), in.readInt());
+            case INSTR_IO:
+                return new IO(label, IO.Op.valueOf(in.readUTF()), in.readInt());
+            case INSTR_COND_JUMP:
+                return new CondJump(label, CondJump.Op.valueOf(in.readUTF()), in.readInt(), in.readInt(), in.readUTF());
+            case INSTR_JUMP_CALL:
+                return new JumpCall(label, JumpCall.Op.valueOf(in.readUTF()), in.readUTF());
+            case INSTR_RET:
+                int reg = in.readInt();
+                return reg >= 0 ? new Ret(label, reg) : new Ret(label);
+            case INSTR_STOP:
+                return new Stop(label);
+            case INSTR_LABEL:
+                return new Label(label);
+            case INSTR_BRANCH_ZERO:
+                return new BranchZero(label, in.readInt(), in.readUTF());
+            case INSTR_FUNCTION_ENTRY:
+                int count = in.readInt();
+                List<String> parameters = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    parameters.add(in.readUTF());
+                }
+                return new FunctionEntry(label, parameters);
+            default:
+                throw new IllegalStateException("Instruction inconnue dans le cache : " + tag);
+        }
+    }
+}
@@ -1,73 +1,163 @@
-import Asm.Instruction;
-import Asm.Program;
-import Type.Type;
-import Type.UnknownType;
+import Asm.ObjectFile;
+import Asm.PackedProgram;
+import Asm.WriterEmitter;
 import org.antlr.v4.runtime.*;
-import org.antlr.v4.runtime.tree.*;
+import org.antlr.v4.runtime.misc.Interval;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Stack;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 public class Main {
 	public static void main(String[] args) throws Exception {
-		// Définir le code source à analyser
-		// Lire le contenu du fichier input.txt dans une chaîne de caractères
-		String filePath = "src\\input"; // Chemin relatif ou absolu du fichier
-		String testCode = new String(Files.readAllBytes(Paths.get(filePath))); // dernier bloc archivé donc au dessus de la pile est celui de core function
-		System.out.println("Code source :\n" + testCode);
-
-		// Charger le code source en tant que flux de caractères
-		CharStream input = CharStreams.fromString(testCode);
-
-		// Analyse lexicale
-		grammarTCLLexer lexer = new grammarTCLLexer(input);
-		CommonTokenStream tokens = new CommonTokenStream(lexer);
-
-		// Analyse syntaxique
-		grammarTCLParser parser = new grammarTCLParser(tokens);
-		grammarTCLParser.MainContext tree = parser.main();
+		args = Trace.configure(args);
+		if (args.length > 0 && args[0].equals("--batch")) {
+			batch(args);
+			return;
+		}
+		if (args.length > 0 && args[0].equals("--server")) {
+			CompileServer.run(args);
+			return;
+		}
+		if (args.length > 1 && args[0].equals("--disassemble")) {
+			disassemble(Paths.get(args[1]));
+			return;
+		}
 
-		// Afficher l'arbre syntaxique
-		System.out.println("Arbre syntaxique généré :");
-		System.out.println(tree.toStringTree(parser));
+		Compiler compiler = new Compiler();
+		boolean echoSource = Arrays.asList(args).contains("--echo-source");
+		boolean objectOutput = Arrays.asList(args).contains("--object");
+		compiler.setParallelTyping(Arrays.asList(args).contains("--parallel-typing"));
+		int cacheOption = Arrays.asList(args).indexOf("--cache");
+		if (cacheOption >= 0) {
+			compiler.setCache(new FunctionCache(Paths.get(args[cacheOption + 1])));
+		}
 
-		// Visiter l'AST avec le TyperVisitor
-		TyperVisitor visitor = new TyperVisitor();
-		visitor.visitMain(tree);
+		// Rapport de compilation (temps et allocations par phase) écrit dans prog.json
+		String filePath = "src\\input"; // Chemin relatif ou absolu du fichier
+		CompileReport report = Arrays.asList(args).contains("--report") ? new CompileReport(filePath) : null;
 
-		Stack<Map<String, Type>> codeGenTypeScopes = new Stack<>();
-		codeGenTypeScopes.push(new HashMap<>());
+		// Charger le fichier source directement en tant que flux de caractères
+		if (report != null) report.begin(CompileReport.Phase.READ);
+		CharStream input = compiler.open(Paths.get(filePath));
+		if (report != null) report.end(CompileReport.Phase.READ);
+		if (echoSource) {
+			System.out.println("Code source :\n" + input.getText(Interval.of(0, input.size() - 1)));
+		}
 
-		//    b) Instancier le CodeGenerator
-		CodeGenerator codeGenerator = new CodeGenerator(codeGenTypeScopes);
+		// Analyse lexicale et syntaxique
+		Compiler.ParseResult parsed = compiler.parse(input, report);
+		grammarTCLParser.MainContext tree = parsed.getTree();
 
-//    c) Générer le Program en visitant l'arbre
-		Program asmProgram = codeGenerator.visitMain(tree);
+		// Tracer l'arbre syntaxique
+		if (Trace.PARSE.isEnabled()) {
+			Trace.PARSE.log("Arbre syntaxique généré :");
+			Trace.PARSE.log(tree.toStringTree(parsed.getParser()));
+		}
 
-		// Afficher les types enregistrés après la visite
-		System.out.println("Pile des tables des types après la visite :");
-		Stack<Map<UnknownType, Type>> typeScopes = visitor.getTypeScopes();
+		// Visiter l'AST avec le TyperVisitor
+		TyperVisitor visitor = compiler.type(tree, report);
 
-		// Afficher les scopes archivés
+		// Tracer les scopes archivés
+		Trace.TYPER.log("Pile des tables des types après la visite :");
 		visitor.printArchivedScopes();
 
-		// 5) Ecrire le Program généré dans un fichier prog.asm
-		StringBuilder asmOutput = new StringBuilder();
-		for (Instruction instr : asmProgram.getInstructions()) {
-			asmOutput.append(instr);  // Ne pas ajouter "\n" pour éviter les sauts de ligne entre les instructions
-		}
-
-// Écriture du contenu dans le fichier
+		// Générer le code et l'écrire fonction par fonction dans le fichier prog.asm (renommé une fois complet)
 		try {
-			Files.write(Paths.get("src\\prog.asm"), asmOutput.toString().getBytes());
+			if (objectOutput) {
+				// Programme gardé sous forme compacte pour écrire aussi le fichier objet prog.tclo
+				PackedProgram program = compiler.generatePacked(tree, visitor.getTypedTree(), report);
+				if (report != null) report.begin(CompileReport.Phase.WRITE);
+				Compiler.writeOutputs(Paths.get("src\\prog.asm"), program, filePath); // Et src\prog.tclo
+				if (report != null) report.end(CompileReport.Phase.WRITE);
+				System.out.println("\nLe fichier objet a été écrit dans le fichier prog.tclo");
+			} else {
+				Compiler.writeOutput(Paths.get("src\\prog.asm"), writer -> compiler.generate(tree, visitor.getTypedTree(), new WriterEmitter(writer), report));
+			}
 			System.out.println("\nLe code assembleur a été écrit dans le fichier prog.asm");
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
+		if (report != null) {
+			report.write(Paths.get("src\\prog.json"));
+		}
+
+	}
 
+	/**
+	 * Mode --disassemble fichier.tclo : affiche le texte assembleur d'un fichier objet.
+	 * @param path fichier objet
+	 * @throws IOException si le fichier ne peut pas être lu
+	 */
+	private static void disassemble(Path path) throws IOException {
+		ObjectFile object = ObjectFile.open(path);
+		Writer writer = new BufferedWriter(new OutputStreamWriter(System.out));
+		object.emit(writer); // Instruction par instruction, depuis le fichier projeté
+		writer.flush();
+	}
+
+	/**
+	 * Mode lot : --batch [-j threads] [-o répertoire] [--fast-parse] [--parallel-typing] [--cache répertoire] [--report] [--object] fichiers-ou-répertoires...
+	 * Compile tous les sources en parallèle dans la même JVM puis affiche un bilan.
+	 * @param args arguments de la ligne de commande
+	 * @throws IOException si un répertoire ne peut pas être parcouru
+	 */
+	private static void batch(String[] args) throws IOException {
+		Compiler compiler = new Compiler();
+		int parallelism = Runtime.getRuntime().availableProcessors();
+		Path outputDir = null;
+		List<Path> inputs = new ArrayList<>();
+		for (int i = 1; i < args.length; i++) {
+			switch (args[i]) {
+				case "-j":
+					parallelism = Integer.parseInt(args[++i]);
+					break;
+				case "-o":
+					outputDir = Paths.get(args[++i]);
+					break;
+				case "--fast-parse":
+					compiler.setFastParse(true);
+					break;
+				case "--parallel-typing":
+					compiler.setParallelTyping(true);
+					break;
+				case "--cache":
+					compiler.setCache(new FunctionCache(Paths.get(args[++i])));
+					break;
+				case "--report":
+					compiler.setReports(true);
+					break;
+				case "--object":
+					compiler.setObjectOutput(true);
+					break;
+				default:
+					inputs.add(Paths.get(args[i]));
+			}
+		}
+		if (inputs.isEmpty()) {
+			System.err.println("Usage : Main --batch [-j threads] [-o répertoire] [--fast-parse] [--parallel-typing] [--cache répertoire] [--report] [--object] fichiers-ou-répertoires...");
+			System.exit(2);
+		}
+
+		BatchCompiler.Summary summary = new BatchCompiler(compiler, parallelism, outputDir).run(inputs);
+		for (String failure : summary.getFailures()) {
+			System.err.println("Échec : " + failure);
+		}
+		System.out.println(summary);
+		if (compiler.getSllParses() + compiler.getLlFallbacks() > 0) {
+			System.out.println("Analyses SLL : " + compiler.getSllParses() + ", replis LL : " + compiler.getLlFallbacks());
+		}
+		if (compiler.getCache() != null) {
+			System.out.println("Cache des fonctions : " + compiler.getCache().getHits() + " succès, " + compiler.getCache().getMisses() + " échecs");
+		}
+		if (!summary.getFailures().isEmpty()) {
+			System.exit(1);
+		}
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,272 @@
+import Type.FunctionType;
+import Type.Type;
+import Type.UnknownType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Table des symboles du typage : chaîne de scopes persistante avec un index par nom.
+ * <p>
+ * Les symboles d'un scope forment une liste chaînée immuable (chaque symbole pointe sur le
+ * précédent du même scope) : ouvrir, fermer ou photographier un scope se fait en temps constant,
+ * sans copie, les photographies partageant les symboles de la table.
+ * <p>
+ * Chaque nom pointe sur sa liaison la plus interne, qui garde un lien vers la liaison qu'elle
+ * masque : retrouver une variable ou une fonction ne parcourt pas les scopes. Fermer un scope
+ * ne met pas l'index à jour ; une liaison d'un scope fermé est écartée (et l'index corrigé)
+ * la prochaine fois que son nom est cherché.
+ * <p>
+ * Une table n'est utilisée que par le visiteur qui l'a créée : elle n'est pas synchronisée.
+ */
+public class SymbolTable {
+    /**
+     * Liaison d'un nom à son type dans un scope. Le type peut être remplacé
+     * au fil de l'inférence.
+     */
+    public static final class Symbol implements Map.Entry<UnknownType, Type> {
+        private final UnknownType key;
+        private Type type;
+        private final Frame frame;
+        private final Symbol shadowed;
+        private final Symbol previous;
+
+        private Symbol(UnknownType key, Type type, Frame frame, Symbol shadowed, Symbol previous) {
+            this.key = key;
+            this.type = type;
+            this.frame = frame;
+            this.shadowed = shadowed;
+            this.previous = previous;
+        }
+
+        /**
+         * Getter de la clé de la déclaration
+         * @return UnknownType nommé comme la variable
+         */
+        @Override
+        public UnknownType getKey() {
+            return key;
+        }
+
+        /**
+         * Getter du type courant
+         * @return type de la variable
+         */
+        @Override
+        public Type getValue() {
+            return type;
+        }
+
+        /**
+         * Setter du type
+         * @param type nouveau type
+         * @return ancien type
+         */
+        @Override
+        public Type setValue(Type type) {
+            Type previousType = this.type;
+            this.type = type;
+            return previousType;
+        }
+
+        /**
+         * Getter de la profondeur du scope de déclaration
+         * @return profondeur (1 pour le scope global)
+         */
+        public int getDepth() {
+            return frame.depth;
+        }
+    }
+
+    /**
+     * Photographie d'un scope : ses symboles déclarés jusqu'à cet instant.
+     * Elle ne copie rien et reste valable après la fermeture du scope.
+     */
+    public static final class Scope {
+        private final int depth;
+        private final Symbol last;
+
+        private Scope(int depth, Symbol last) {
+            this.depth = depth;
+            this.last = last;
+        }
+
+        /**
+         * Getter de la profondeur du scope
+         * @return profondeur (1 pour le scope global)
+         */
+        public int getDepth() {
+            return depth;
+        }
+
+        /**
+         * Contenu du scope dans l'ordre des déclarations, avec les types courants.
+         * @return associations clé / type
+         */
+        public Map<UnknownType, Type> toMap() {
+            List<Symbol> symbols = new ArrayList<>();
+            for (Symbol symbol = last; symbol != null; symbol = symbol.previous) {
+                symbols.add(symbol);
+            }
+            Collections.reverse(symbols);
+            Map<UnknownType, Type> content = new LinkedHashMap<>();
+            for (Symbol symbol : symbols) {
+                content.put(symbol.key, symbol.type);
+            }
+            return content;
+        }
+    }
+
+    /**
+     * Scope ouvert : sommet de la chaîne des scopes.
+     */
+    private static final class Frame {
+        private final Frame parent;
+        private final int depth;
+        private Symbol last = null;
+        private boolean closed = false;
+
+        private Frame(Frame parent) {
+            this.parent = parent;
+            this.depth = parent == null ? 1 : parent.depth + 1;
+        }
+    }
+
+    private final Map<String, Symbol> innermost = new HashMap<>();
+    private Frame current = null;
+
+    /**
+     * Ouvre un nouveau scope.
+     */
+    public void push() {
+        current = new Frame(current);
+    }
+
+    /**
+     * Ferme le scope courant ; les liaisons qu'il masquait redeviennent visibles.
+     * @return photographie du scope fermé
+     */
+    public Scope pop() {
+        Frame closed = current;
+        closed.closed = true;
+        current = closed.parent;
+        return new Scope(closed.depth, closed.last);
+    }
+
+    /**
+     * Getter de la profondeur courante
+     * @return nombre de scopes ouverts
+     */
+    public int depth() {
+        return current == null ? 0 : current.depth;
+    }
+
+    /**
+     * Photographie le scope courant.
+     * @return photographie du scope courant
+     */
+    public Scope currentScope() {
+        return new Scope(current.depth, current.last);
+    }
+
+    /**
+     * Déclare un symbole dans le scope courant ; il masque les symboles de même nom.
+     * @param key clé de la déclaration
+     * @param type type déclaré
+     * @return la liaison créée
+     */
+    public Symbol declare(UnknownType key, Type type) {
+        String name = key.getVarName();
+        Symbol symbol = new Symbol(key, type, current, visible(name), current.last);
+        current.last = symbol;
+        innermost.put(name, symbol);
+        return symbol;
+    }
+
+    /**
+     * Liaison visible la plus interne d'un nom : les liaisons des scopes fermés sont
+     * retirées de l'index au passage.
+     * @param name nom cherché
+     * @return la liaison, ou null
+     */
+    private Symbol visible(String name) {
+        Symbol indexed = innermost.get(name);
+        Symbol symbol = indexed;
+        while (symbol != null && symbol.frame.closed) {
+            symbol = symbol.shadowed; // Une liaison ouverte ne masque que des liaisons ouvertes
+        }
+        if (symbol != indexed) {
+            if (symbol == null) {
+                innermost.remove(name);
+            } else {
+                innermost.put(name, symbol);
+            }
+        }
+        return symbol;
+    }
+
+    /**
+     * Cherche la liaison la plus interne d'un nom.
+     * @param name nom de la variable ou de la fonction
+     * @return la liaison, ou null si le nom n'est pas déclaré
+     */
+    public Symbol lookup(String name) {
+        return visible(name);
+    }
+
+    /**
+     * Cherche la fonction la plus interne portant un nom, en ignorant les variables homonymes.
+     * @param name nom de la fonction
+     * @return sa signature, ou null si aucune fonction ne porte ce nom
+     */
+    public FunctionType lookupFunction(String name) {
+        for (Symbol symbol = visible(name); symbol != null; symbol = symbol.shadowed) {
+            if (symbol.type instanceof FunctionType) {
+                return (FunctionType) symbol.type;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Teste si un nom est déclaré dans le scope courant.
+     * @param name nom de la variable
+     * @return boolean
+     */
+    public boolean isDeclaredInCurrentScope(String name) {
+        Symbol symbol = visible(name);
+        return symbol != null && symbol.frame == current;
+    }
+
+    /**
+     * Teste si une fonction de ce nom est déclarée dans le scope courant.
+     * @param name nom de la fonction
+     * @return boolean
+     */
+    public boolean isFunctionDeclaredInCurrentScope(String name) {
+        for (Symbol symbol = visible(name); symbol != null && symbol.frame == current; symbol = symbol.shadowed) {
+            if (symbol.type instanceof FunctionType) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Remplace le type d'une déclaration, même masquée ; ne fait rien si son scope est fermé.
+     * @param key clé de la déclaration
+     * @param type nouveau type
+     */
+    public void update(UnknownType key, Type type) {
+        for (Symbol symbol = visible(key.getVarName()); symbol != null; symbol = symbol.shadowed) {
+            if (symbol.key.equals(key)) {
+                symbol.type = type;
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Traces de débogage du compilateur, activables phase par phase.
+ * <p>
+ * Une phase désactivée ne coûte qu'un test de booléen : {@link #log(String)} ne fait rien
+ * et les messages coûteux à construire doivent être protégés par {@link #isEnabled()}.
+ * Les messages sont écrits dans un tampon (sortie d'erreur par défaut) vidé à la fin du programme.
+ * <p>
+ * Activation : option --trace=codegen,typer (ou all) sur la ligne de commande,
+ * ou propriété système tcl.trace ; --trace-file=chemin redirige les traces dans un fichier.
+ */
+public enum Trace {
+    PARSE, TYPER, CODEGEN, DRIVER;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static Writer sink = new BufferedWriter(new OutputStreamWriter(System.err, StandardCharsets.UTF_8), BUFFER_SIZE);
+    private static boolean hookInstalled = false;
+
+    private boolean enabled = false;
+
+    static {
+        String property = System.getProperty("tcl.trace");
+        if (property != null) {
+            enable(property);
+        }
+    }
+
+    /**
+     * Teste si la phase est tracée
+     * @return boolean
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Écrit un message si la phase est tracée.
+     * @param message message à écrire
+     */
+    public void log(String message) {
+        if (enabled) {
+            write(this, message);
+        }
+    }
+
+    /**
+     * Active les phases désignées.
+     * @param phases noms de phases séparés par des virgules, ou "all"
+     */
+    public static synchronized void enable(String phases) {
+        for (String name : phases.split(",")) {
+            String phase = name.trim();
+            if (phase.isEmpty()) continue;
+            if (phase.equalsIgnoreCase("all")) {
+                for (Trace trace : values()) {
+                    trace.enabled = true;
+                }
+            } else {
+                valueOf(phase.toUpperCase()).enabled = true;
+            }
+        }
+        installFlushHook();
+    }
+
+    /**
+     * Remplace la destination des traces.
+     * @param writer nouvelle destination (un tampon est ajouté par-dessus)
+     */
+    public static synchronized void setSink(Writer writer) {
+        flush();
+        sink = new BufferedWriter(writer, BUFFER_SIZE);
+    }
+
+    /**
+     * Vide le tampon des traces.
+     */
+    public static synchronized void flush() {
+        try {
+            sink.flush();
+        } catch (IOException e) {
+            System.err.println("Traces perdues : " + e);
+        }
+    }
+
+    /**
+     * Extrait les options de trace (--trace=..., --trace-file=...) de la ligne de commande
+     * et les applique.
+     * @param args arguments de la ligne de commande
+     * @return les arguments restants
+     * @throws IOException si le fichier de traces ne peut pas être créé
+     */
+    public static String[] configure(String[] args) throws IOException {
+        List<String> remaining = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--trace=")) {
+                enable(arg.substring("--trace=".length()));
+            } else if (arg.startsWith("--trace-file=")) {
+                setSink(Files.newBufferedWriter(Paths.get(arg.substring("--trace-file=".length()))));
+            } else {
+                remaining.add(arg);
+            }
+        }
+        return remaining.toArray(new String[0]);
+    }
+
+    /**
+     * Écrit une ligne de trace préfixée par le nom de la phase.
+     * @param phase phase émettrice
+     * @param message message à écrire
+     */
+    private static synchronized void write(Trace phase, String message) {
+        try {
+            sink.write('[');
+            sink.write(phase.name().toLowerCase());
+            sink.write("] ");
+            sink.write(message);
+            sink.write('\n');
+        } catch (IOException e) {
+            System.err.println("Trace perdue : " + e);
+        }
+    }
+
+    /**
+     * Vide le tampon à l'arrêt de la JVM, une fois qu'une phase a été activée.
+     */
+    private static void installFlushHook() {
+        if (!hookInstalled) {
+            hookInstalled = true;
+            Runtime.getRuntime().addShutdownHook(new Thread(Trace::flush));
+        }
+    }
+}
@@ -2,14 +2,34 @@ package Type;
 import java.util.Map;
 
 public class ArrayType extends Type{
-    private Type tabType;
+    private final Type tabType;
+    private final int hash;
+    private final boolean ground;
 
     /**
-     * Constructeur
+     * Constructeur : passer par {@link #of(Type)} pour partager les instances
      * @param t type des éléments du tableau
      */
-    public ArrayType(Type t) {
+    private ArrayType(Type t) {
         this.tabType = t;
+        this.hash = 31 * t.hashCode() + 7;
+        this.ground = t.isGround();
+    }
+
+    /**
+     * Type tableau d'un type d'éléments. L'instance est gardée par le type des éléments :
+     * deux tableaux d'un même objet type sont le même objet, et comme les types de base
+     * sont uniques, int[] ou bool[][] n'existent qu'en un exemplaire.
+     * @param t type des éléments du tableau
+     * @return le type tableau
+     */
+    public static ArrayType of(Type t) {
+        ArrayType array = t.arrayType;
+        if (array == null) {
+            array = new ArrayType(t);
+            t.arrayType = array; // Course bénigne : deux instances égales au pire
+        }
+        return array;
     }
 
     /**
@@ -31,9 +51,15 @@ public class ArrayType extends Type{
 
 
     @Override
-    public Type substitute(UnknownType v, Type t) {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException("Unimplemented method 'substitute'");
+    Type applySubstitution(Substitution s) {
+        // Le tableau n'est recréé que si le type de ses éléments change
+        Type substituted = s.apply(tabType);
+        return substituted == tabType ? this : ArrayType.of(substituted);
+    }
+
+    @Override
+    public boolean isGround() {
+        return ground;
     }
 
     @Override
@@ -54,7 +80,12 @@ public class ArrayType extends Type{
         ArrayType other = (ArrayType) obj;
 
         // Vérifie que les types des éléments du tableau sont équivalents
-        return this.tabType.equals(other.tabType);
+        return this.hash == other.hash && this.tabType.equals(other.tabType);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
     }
 
 
@@ -1,20 +1,44 @@
 package Type;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-
+import java.util.function.UnaryOperator;
+
+/**
+ * Signature de fonction, immuable : les types des arguments sont rangés dans un tableau
+ * qui n'est jamais exposé ni modifié après la construction. Les auto de la signature sont des
+ * variables de type résolues en place par le typage (voir TypeConstraints), sans recopier
+ * la signature.
+ */
 public class FunctionType extends Type {
-    private Type returnType;
-    private ArrayList<Type> argsTypes;
+    private final Type returnType;
+    private final Type[] argsTypes;
+    private final boolean ground;
+    private int hash = 0;
 
     /**
      * Constructeur
      * @param returnType type de retour
-     * @param argsTypes liste des types des arguments
+     * @param argsTypes liste des types des arguments (copiée)
      */
-    public FunctionType(Type returnType, ArrayList<Type> argsTypes) {
+    public FunctionType(Type returnType, List<Type> argsTypes) {
+        this(returnType, argsTypes.toArray(new Type[0]));
+    }
+
+    /**
+     * Constructeur à partir d'un tableau qui n'est plus modifié par l'appelant
+     * @param returnType type de retour
+     * @param argsTypes types des arguments
+     */
+    private FunctionType(Type returnType, Type[] argsTypes) {
         this.returnType = returnType;
         this.argsTypes = argsTypes;
+        boolean ground = returnType.isGround();
+        for (Type argType : argsTypes) {
+            ground &= argType.isGround();
+        }
+        this.ground = ground;
     }
 
     /**
@@ -31,24 +55,46 @@ public class FunctionType extends Type {
      * @return type du i-eme argument
      */
     public Type getArgsType(int i) {
-        return argsTypes.get(i);
+        return argsTypes[i];
     }
 
     /**
-     * Getter du nombre d'arguments
-     * @return nombre d'arguments
+     * Getter des types des arguments
+     * @return vue non modifiable des types des arguments (sans copie)
      */
+    public List<Type> getArgsTypes() {
+        return Collections.unmodifiableList(Arrays.asList(argsTypes));
+    }
 
     /**
-     * Getter for the list of argument types
-     * @return list of argument types
+     * Getter du nombre d'arguments
+     * @return nombre d'arguments
      */
-    public List<Type> getArgsTypes() {
-        return new ArrayList<>(argsTypes); // Return a copy to ensure encapsulation
+    public int getNbArgs() {
+        return argsTypes.length;
     }
 
-    public int getNbArgs() {
-        return argsTypes.size();
+    /**
+     * Applique une transformation à chacun des types de la signature (arguments puis retour).
+     * @param f transformation d'un type
+     * @return la signature transformée, ou cette signature si aucun type n'a changé
+     */
+    public FunctionType map(UnaryOperator<Type> f) {
+        Type[] mappedArgs = null;
+        for (int i = 0; i < argsTypes.length; i++) {
+            Type mapped = f.apply(argsTypes[i]);
+            if (mapped != argsTypes[i] && mappedArgs == null) {
+                mappedArgs = argsTypes.clone(); // Copie seulement au premier changement
+            }
+            if (mappedArgs != null) {
+                mappedArgs[i] = mapped;
+            }
+        }
+        Type mappedReturn = f.apply(returnType);
+        if (mappedArgs == null && mappedReturn == returnType) {
+            return this;
+        }
+        return new FunctionType(mappedReturn, mappedArgs != null ? mappedArgs : argsTypes);
     }
 
     @Override
@@ -87,21 +133,53 @@ public class FunctionType extends Type {
 
 
     @Override
-    public Type substitute(UnknownType v, Type t) {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException("Unimplemented method 'substitute'");
+    Type applySubstitution(Substitution s) {
+        // La signature n'est recréée que si l'un de ses types change
+        return ground ? this : map(s::apply);
+    }
+
+    @Override
+    public boolean isGround() {
+        return ground;
     }
 
     @Override
     public boolean contains(UnknownType v) {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException("Unimplemented method 'contains'");
+        // Cherche la variable dans le type de retour puis dans les arguments
+        if (returnType.contains(v)) {
+            return true;
+        }
+        for (Type argType : argsTypes) {
+            if (argType.contains(v)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     @Override
     public boolean equals(Object t) {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException("Unimplemented method 'equals'");
+        if (this == t) return true;
+        if (!(t instanceof FunctionType)) return false;
+
+        // Même type de retour et mêmes types d'arguments, dans l'ordre
+        FunctionType other = (FunctionType) t;
+        return this.hashCode() == other.hashCode()
+                && this.returnType.equals(other.returnType)
+                && Arrays.equals(this.argsTypes, other.argsTypes);
+    }
+
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0) { // Calculé au premier appel : la signature ne change plus une fois construite
+            h = returnType.hashCode();
+            for (Type argType : argsTypes) {
+                h = 31 * h + argType.hashCode();
+            }
+            hash = h;
+        }
+        return h;
     }
 
     @Override
@@ -110,9 +188,9 @@ public class FunctionType extends Type {
         sb.append("FunctionType(");
         sb.append("returnType=").append(returnType);
         sb.append(", argsTypes=[");
-        for (int i = 0; i < argsTypes.size(); i++) {
-            sb.append(argsTypes.get(i));
-            if (i < argsTypes.size() - 1) {
+        for (int i = 0; i < argsTypes.length; i++) {
+            sb.append(argsTypes[i]);
+            if (i < argsTypes.length - 1) {
                 sb.append(", ");
             }
         }
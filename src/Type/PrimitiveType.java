@@ -2,16 +2,35 @@ package Type;
 import java.util.Map;
 
 public  class PrimitiveType extends Type {
-    private Type.Base type;
+    /**
+     * Type int, unique instance.
+     */
+    public static final PrimitiveType INT = new PrimitiveType(Type.Base.INT);
+
+    /**
+     * Type bool, unique instance.
+     */
+    public static final PrimitiveType BOOL = new PrimitiveType(Type.Base.BOOL);
+
+    private final Type.Base type;
 
     /**
-     * Constructeur
+     * Constructeur : les deux instances sont {@link #INT} et {@link #BOOL}
      * @param type type de base
      */
-    public PrimitiveType(Type.Base type) {
+    private PrimitiveType(Type.Base type) {
         this.type = type;
     }
 
+    /**
+     * Instance unique d'un type de base
+     * @param type type de base
+     * @return {@link #INT} ou {@link #BOOL}
+     */
+    public static PrimitiveType of(Type.Base type) {
+        return type == Type.Base.INT ? INT : BOOL;
+    }
+
     /**
      * Getter du type
      * @return type
@@ -37,9 +56,14 @@ public  class PrimitiveType extends Type {
     }
 
     @Override
-    public Type substitute(UnknownType v, Type t) {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException("Unimplemented method 'substitute'");
+    Type applySubstitution(Substitution s) {
+        // Un type de base ne contient pas de variable
+        return this;
+    }
+
+    @Override
+    public boolean isGround() {
+        return true;
     }
 
     @Override
@@ -50,21 +74,13 @@ public  class PrimitiveType extends Type {
 
     @Override
     public boolean equals(Object obj) {
-        // Vérifie si c'est la même instance
-        if (this == obj) {
-            return true;
-        }
-
-        // Vérifie si l'objet est une instance de PrimitiveType
-        if (obj instanceof PrimitiveType) {
-            PrimitiveType other = (PrimitiveType) obj;
-
-            // Compare les types de base
-            return this.type == other.type;
-        }
+        // Un seul objet par type de base
+        return this == obj;
+    }
 
-        // Si ce n'est pas un PrimitiveType, retourne false
-        return false;
+    @Override
+    public int hashCode() {
+        return type.hashCode();
     }
 
 
@@ -0,0 +1,85 @@
+package Type;
+
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Substitution de variables de type appliquée en un seul parcours.
+ * <p>
+ * Chaque variable rencontrée est cherchée dans les liaisons ; en mode transitif, le type lié
+ * est lui-même substitué, de sorte que des liaisons en chaîne (a -> b, b -> int) sont résolues
+ * quel que soit leur ordre. Un sous-type que la substitution ne change pas est partagé, pas
+ * recopié, et le résultat de chaque type composé est mémorisé : une même signature substituée
+ * plusieurs fois avec la même substitution n'est parcourue qu'une fois.
+ */
+public class Substitution {
+    private final Function<UnknownType, Type> bindings;
+    private final boolean transitive;
+    private final Map<Type, Type> memo = new IdentityHashMap<>();
+    private final Set<UnknownType> resolving = new HashSet<>();
+
+    /**
+     * Constructeur
+     * @param bindings type lié à chaque variable (null si la variable est libre)
+     * @param transitive true pour substituer aussi les types liés
+     */
+    public Substitution(Function<UnknownType, Type> bindings, boolean transitive) {
+        this.bindings = bindings;
+        this.transitive = transitive;
+    }
+
+    /**
+     * Constructeur à partir d'une table de liaisons, en mode transitif
+     * @param bindings liaisons des variables
+     */
+    public Substitution(Map<UnknownType, Type> bindings) {
+        this(bindings::get, true);
+    }
+
+    /**
+     * Applique la substitution à un type.
+     * @param type type à substituer
+     * @return le type substitué (le type lui-même s'il ne change pas)
+     * @throws IllegalArgumentException si des liaisons transitives forment un cycle
+     */
+    public Type apply(Type type) {
+        if (type.isGround()) {
+            return type; // Rien à substituer, pas besoin de mémoriser
+        }
+        if (type instanceof UnknownType) {
+            return type.applySubstitution(this);
+        }
+        Type result = memo.get(type);
+        if (result == null) {
+            result = type.applySubstitution(this);
+            memo.put(type, result);
+        }
+        return result;
+    }
+
+    /**
+     * Substitue une variable selon sa liaison.
+     * @param variable variable de type
+     * @return le type qui la remplace (la variable elle-même si elle est libre)
+     */
+    Type applyToVariable(UnknownType variable) {
+        Type bound = bindings.apply(variable);
+        if (bound == null || bound.equals(variable)) {
+            return variable;
+        }
+        if (!transitive) {
+            return bound;
+        }
+        if (!resolving.add(variable)) {
+            throw new IllegalArgumentException("Substitution échouée : dépendance circulaire sur " + variable);
+        }
+        try {
+            return apply(bound);
+        } finally {
+            resolving.remove(variable);
+        }
+    }
+}
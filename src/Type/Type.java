@@ -6,12 +6,16 @@ public abstract class Type {
     public enum Base { INT, BOOL };
 
     /**
-     * Fonction de hashage pour les HashMap
+     * Type tableau de ce type, créé au premier appel de {@link ArrayType#of(Type)}.
+     */
+    ArrayType arrayType = null;
+
+    /**
+     * Fonction de hashage pour les HashMap, cohérente avec equals. Elle est calculée
+     * une fois pour toutes à partir de la structure du type, sans passer par toString.
      * @return hash du type
      */
-    @Override public int hashCode() {
-        return this.toString().hashCode();
-    }
+    @Override public abstract int hashCode();
 
     /** 
      * Unification
@@ -33,19 +37,27 @@ public abstract class Type {
      * @param t type par lequel remplacer v
      * @return Type obtenu en remplaçant v par t
      */
-    public abstract Type substitute(UnknownType v, Type t);
+    public Type substitute(UnknownType v, Type t) {
+        return new Substitution(u -> u.equals(v) ? t : null, false).apply(this);
+    }
     
     /**
-     * Applique plusieurs substitutions
+     * Applique plusieurs substitutions en un seul parcours ; les liaisons en chaîne
+     * (a -> b, b -> int) sont résolues quel que soit leur ordre.
      * @param h liste de substitutions
      * @return Type obtenu en appliquant toutes les substitutions de h
      */
     public Type substituteAll(Map<UnknownType,Type> h){
-        Type result = this;
-        for (UnknownType key : h.keySet()) 
-            result = result.substitute(key, h.get(key));
-        return result;
+        return h.isEmpty() ? this : new Substitution(h).apply(this);
     }
+
+    /**
+     * Applique une substitution à ce type : voir {@link Substitution#apply(Type)},
+     * qui mémorise les résultats.
+     * @param s substitution
+     * @return le type substitué, ce type lui-même s'il ne change pas
+     */
+    abstract Type applySubstitution(Substitution s);
     
     /** 
      * Test si le type dépend du type variable v
@@ -54,6 +66,13 @@ public abstract class Type {
      */
     public abstract boolean contains(UnknownType v);
 
+    /**
+     * Teste si le type ne contient aucune variable de type : un tel type n'a
+     * besoin ni d'être résolu ni d'être instancié.
+     * @return boolean
+     */
+    public abstract boolean isGround();
+
     /**
      * Convertit le type en String. Deux types égaux doivent avoir la même String.
      * @return String
@@ -1,6 +1,7 @@
 package Type;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.tree.ParseTree;
@@ -9,14 +10,16 @@ import org.antlr.v4.runtime.tree.TerminalNode;
 public class UnknownType extends Type {
     private String varName;
     private int varIndex;
-    private static int newVariableCounter = 0;
+    private int hash;
+    private static final AtomicInteger newVariableCounter = new AtomicInteger(); // partagé entre les compilations parallèles
 
     /**
      * Constructeur sans nom
      */
     public UnknownType(){
-        this.varIndex = newVariableCounter++;
+        this.varIndex = newVariableCounter.getAndIncrement();
         this.varName = "#";
+        this.hash = computeHash();
     }
 
     /**
@@ -27,6 +30,7 @@ public class UnknownType extends Type {
     public UnknownType(String s, int n)  {
         this.varName = s;
         this.varIndex = n;
+        this.hash = computeHash();
     }
 
     /**
@@ -45,6 +49,15 @@ public class UnknownType extends Type {
                 throw new Error("Illegal UnknownType construction");
             }
         }
+        this.hash = computeHash();
+    }
+
+    /**
+     * Hash à partir du nom et du numéro, comme equals
+     * @return hash de la variable de type
+     */
+    private int computeHash() {
+        return 31 * varName.hashCode() + varIndex;
     }
 
     /**
@@ -69,6 +82,7 @@ public class UnknownType extends Type {
      */
     public void setVarIndex(int n) {
         this.varIndex = n;
+        this.hash = computeHash();
     }
 
     @Override
@@ -103,16 +117,17 @@ public class UnknownType extends Type {
 
 
     @Override
-    public Type substitute(UnknownType v, Type t) {
-        // Si l'instance actuelle est égale à l'UnknownType cible, on remplace par le type donné
-        if (this.equals(v)) {
-            return t; // Effectue la substitution
-        }
-        // Si ce n'est pas égal, retourne l'instance actuelle (aucune substitution nécessaire ici)
-        return this;
+    Type applySubstitution(Substitution s) {
+        // Remplacée par sa liaison si elle en a une
+        return s.applyToVariable(this);
     }
 
 
+    @Override
+    public boolean isGround() {
+        return false;
+    }
+
     @Override
     public boolean contains(UnknownType v) {
         // Vérifie si l'instance actuelle est égale à l'UnknownType donné
@@ -131,7 +146,7 @@ public class UnknownType extends Type {
             UnknownType other = (UnknownType) obj;
 
             // Compare les noms et les indices des variables
-            return this.varName.equals(other.varName) && this.varIndex == other.varIndex;
+            return this.hash == other.hash && this.varIndex == other.varIndex && this.varName.equals(other.varName);
         }
 
         // Si ce n'est pas un UnknownType, retourne false
@@ -140,6 +155,11 @@ public class UnknownType extends Type {
 
 
 
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
     @Override
     public String toString() {
         return "UnknownType(varName=" + varName + ", varIndex=" + varIndex + ")";
@@ -0,0 +1,297 @@
+import Type.ArrayType;
+import Type.FunctionType;
+import Type.PrimitiveType;
+import Type.Substitution;
+import Type.Type;
+import Type.UnknownType;
+import org.antlr.v4.runtime.ParserRuleContext;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Contraintes d'égalité entre types émises par le typage, et leur résolution.
+ * <p>
+ * Le visiteur de typage ne fait qu'émettre des contraintes (« ce type doit être égal à
+ * celui-là ») entre les types des nœuds, qui peuvent être des variables de type (UnknownType) :
+ * {@link #solve()} les résout ensuite toutes d'un coup avec une liste de travail. Une contrainte
+ * entre deux types composés est décomposée en contraintes sur leurs composantes ; deux variables
+ * sont réunies dans la même classe d'équivalence ({@link TypeVariables}), une variable face à un
+ * type concret lie sa classe à ce type. Chaque contrainte est traitée une fois, en temps
+ * quasi constant : la résolution est linéaire en le nombre de contraintes.
+ */
+public class TypeConstraints {
+    /**
+     * Contrainte d'égalité entre deux types, émise par un nœud de l'arbre. Le message d'erreur
+     * n'est construit (avec le texte du nœud) que si la contrainte échoue.
+     */
+    private static final class Constraint {
+        private final Type expected;
+        private final Type actual;
+        private final ParserRuleContext node;
+        private final String message;
+        private final String subject;
+
+        private Constraint(Type expected, Type actual, ParserRuleContext node, String message, String subject) {
+            this.expected = expected;
+            this.actual = actual;
+            this.node = node;
+            this.message = message;
+            this.subject = subject;
+        }
+
+        /**
+         * Contrainte sur des composantes, rattachée au même nœud.
+         * @param expected composante attendue
+         * @param actual composante trouvée
+         * @return nouvelle contrainte
+         */
+        private Constraint component(Type expected, Type actual) {
+            return new Constraint(expected, actual, node, message, subject);
+        }
+
+        /**
+         * Message d'erreur situant la contrainte dans le source.
+         * @return message
+         */
+        private String describe() {
+            return (subject == null ? message : message + subject) + " : " + node.getText() + " (ligne " + node.getStart().getLine() + ")";
+        }
+    }
+
+    private final TypeVariables variables = new TypeVariables();
+    private final Deque<Constraint> worklist = new ArrayDeque<>();
+    private Substitution resolver = null;
+
+    /**
+     * Exige que deux types soient égaux.
+     * @param expected type attendu
+     * @param actual type trouvé
+     * @param node nœud qui émet la contrainte
+     * @param message message d'erreur si les types ne peuvent pas être égaux
+     */
+    public void require(Type expected, Type actual, ParserRuleContext node, String message) {
+        worklist.add(new Constraint(expected, actual, node, message, null));
+    }
+
+    /**
+     * Exige que deux types soient égaux, avec un message d'erreur en deux parties
+     * concaténées seulement si la contrainte échoue.
+     * @param expected type attendu
+     * @param actual type trouvé
+     * @param node nœud qui émet la contrainte
+     * @param message début du message d'erreur
+     * @param subject fin du message d'erreur (le nom de la fonction appelée, par exemple)
+     */
+    public void require(Type expected, Type actual, ParserRuleContext node, String message, String subject) {
+        worklist.add(new Constraint(expected, actual, node, message, subject));
+    }
+
+    /**
+     * Résout les contraintes en attente.
+     * @throws IllegalArgumentException si une contrainte ne peut pas être satisfaite
+     */
+    public void solve() {
+        while (!worklist.isEmpty()) {
+            Constraint constraint = worklist.poll();
+            unify(constraint.expected, constraint.actual, constraint);
+        }
+    }
+
+    /**
+     * Unifie deux types : réunit les variables, lie les variables aux types concrets
+     * et décompose les types composés en nouvelles contraintes.
+     * @param expected type attendu
+     * @param actual type trouvé
+     * @param origin contrainte d'origine, pour le message d'erreur
+     */
+    private void unify(Type expected, Type actual, Constraint origin) {
+        expected = shallow(expected);
+        actual = shallow(actual);
+        if (expected == actual) {
+            return;
+        }
+        if (expected instanceof UnknownType || actual instanceof UnknownType) {
+            resolver = null; // Les classes changent : les résolutions mémorisées ne valent plus
+        }
+        if (expected instanceof UnknownType && actual instanceof UnknownType) {
+            variables.union((UnknownType) actual, (UnknownType) expected);
+        } else if (expected instanceof UnknownType) {
+            bind((UnknownType) expected, actual, origin);
+        } else if (actual instanceof UnknownType) {
+            bind((UnknownType) actual, expected, origin);
+        } else if (expected instanceof PrimitiveType && actual instanceof PrimitiveType) {
+            if (((PrimitiveType) expected).getType() != ((PrimitiveType) actual).getType()) {
+                throw mismatch(origin);
+            }
+        } else if (expected instanceof ArrayType && actual instanceof ArrayType) {
+            worklist.add(origin.component(((ArrayType) expected).getTabType(), ((ArrayType) actual).getTabType()));
+        } else if (expected instanceof FunctionType && actual instanceof FunctionType) {
+            FunctionType expectedFunction = (FunctionType) expected;
+            FunctionType actualFunction = (FunctionType) actual;
+            if (expectedFunction.getNbArgs() != actualFunction.getNbArgs()) {
+                throw mismatch(origin);
+            }
+            for (int i = 0; i < expectedFunction.getNbArgs(); i++) {
+                worklist.add(origin.component(expectedFunction.getArgsType(i), actualFunction.getArgsType(i)));
+            }
+            worklist.add(origin.component(expectedFunction.getReturnType(), actualFunction.getReturnType()));
+        } else {
+            throw mismatch(origin);
+        }
+    }
+
+    /**
+     * Lie la classe d'une variable (encore libre) à un type concret.
+     * @param variable variable de type
+     * @param type type concret
+     * @param origin contrainte d'origine, pour le message d'erreur
+     */
+    private void bind(UnknownType variable, Type type, Constraint origin) {
+        if (occurs(variables.find(variable), type)) {
+            throw new IllegalArgumentException(origin.describe() + " : dépendance circulaire entre "
+                    + variable + " et " + resolve(type));
+        }
+        variables.bind(variable, type);
+    }
+
+    /**
+     * Teste si une variable apparaît dans un type.
+     * @param root représentant de la classe de la variable
+     * @param type type à parcourir
+     * @return boolean
+     */
+    private boolean occurs(UnknownType root, Type type) {
+        type = shallow(type);
+        if (type instanceof UnknownType) {
+            return variables.find((UnknownType) type).equals(root);
+        }
+        if (type instanceof ArrayType) {
+            return occurs(root, ((ArrayType) type).getTabType());
+        }
+        if (type instanceof FunctionType) {
+            FunctionType function = (FunctionType) type;
+            for (int i = 0; i < function.getNbArgs(); i++) {
+                if (occurs(root, function.getArgsType(i))) {
+                    return true;
+                }
+            }
+            return occurs(root, function.getReturnType());
+        }
+        return false;
+    }
+
+    /**
+     * Remplace une variable par le type concret de sa classe, ou par son représentant
+     * si la classe est encore libre. Les composantes des types composés ne sont pas résolues.
+     * @param type type à résoudre
+     * @return type résolu en surface
+     */
+    private Type shallow(Type type) {
+        if (type instanceof UnknownType) {
+            Type resolved = variables.resolved((UnknownType) type);
+            return resolved != null ? resolved : variables.find((UnknownType) type);
+        }
+        return type;
+    }
+
+    /**
+     * Résout complètement un type avec les contraintes déjà résolues : les variables liées
+     * sont remplacées par leur type, les variables libres par le représentant de leur classe.
+     * La substitution est mémorisée tant que les classes ne changent pas : une signature
+     * résolue plusieurs fois (typage, arbre typé, génération) n'est parcourue qu'une fois,
+     * et les sous-types qui ne contiennent pas de variable liée sont partagés.
+     * @param type type à résoudre
+     * @return type résolu (le type lui-même s'il ne change pas)
+     */
+    public Type resolve(Type type) {
+        if (resolver == null) {
+            resolver = new Substitution(this::binding, true);
+        }
+        return resolver.apply(type);
+    }
+
+    /**
+     * Liaison d'une variable pour la résolution : le type concret de sa classe,
+     * sinon son représentant s'il s'agit d'une autre variable.
+     * @param variable variable de type
+     * @return le type qui la remplace, ou null si elle se résout en elle-même
+     */
+    private Type binding(UnknownType variable) {
+        Type resolved = variables.resolved(variable);
+        if (resolved != null) {
+            return resolved;
+        }
+        UnknownType root = variables.find(variable);
+        return root.equals(variable) ? null : root;
+    }
+
+    /**
+     * Copie un type résolu en remplaçant ses variables libres par des variables fraîches :
+     * chaque appel d'une fonction dont la signature garde des auto libres les infère
+     * indépendamment des autres appels.
+     * @param type type résolu (voir {@link #resolve(Type)})
+     * @return le type avec des variables fraîches, ou le type lui-même s'il n'a pas de variable
+     */
+    public Type instantiate(Type type) {
+        return type.isGround() ? type : instantiate(type, new HashMap<>());
+    }
+
+    /**
+     * Copie un type résolu avec des variables fraîches.
+     * @param type type résolu
+     * @param fresh variables fraîches déjà associées aux variables du type
+     * @return le type copié, ou le type lui-même s'il n'a pas de variable
+     */
+    private Type instantiate(Type type, Map<UnknownType, UnknownType> fresh) {
+        if (type.isGround()) {
+            return type;
+        }
+        if (type instanceof UnknownType) {
+            return fresh.computeIfAbsent((UnknownType) type, v -> new UnknownType());
+        }
+        if (type instanceof ArrayType) {
+            Type tabType = ((ArrayType) type).getTabType();
+            Type copy = instantiate(tabType, fresh);
+            return copy == tabType ? type : ArrayType.of(copy);
+        }
+        if (type instanceof FunctionType) {
+            return ((FunctionType) type).map(component -> instantiate(component, fresh));
+        }
+        return type;
+    }
+
+    /**
+     * Reprend les classes de variables de contraintes déjà résolues, émises pour
+     * d'autres nœuds (le corps d'une fonction typé à part) : les types de ces nœuds
+     * se résolvent ensuite ici.
+     * @param other contraintes résolues, qui ne doivent plus être modifiées
+     */
+    public void absorb(TypeConstraints other) {
+        if (!other.worklist.isEmpty()) {
+            throw new IllegalStateException("Contraintes non résolues");
+        }
+        variables.absorb(other.variables);
+        resolver = null;
+    }
+
+    /**
+     * Getter des classes d'équivalence des variables
+     * @return classes des variables de type
+     */
+    public TypeVariables getVariables() {
+        return variables;
+    }
+
+    /**
+     * Erreur d'une contrainte insatisfaite.
+     * @param origin contrainte d'origine
+     * @return l'exception à lever
+     */
+    private IllegalArgumentException mismatch(Constraint origin) {
+        return new IllegalArgumentException(origin.describe() + " : attendu " + resolve(origin.expected)
+                + ", trouvé " + resolve(origin.actual));
+    }
+}
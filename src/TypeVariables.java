@@ -0,0 +1,132 @@
+import Type.Type;
+import Type.UnknownType;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Classes d'équivalence des variables de type (UnknownType) du typage, en union-find.
+ * <p>
+ * Chaque classe a un représentant qui porte le type concret de toute la classe une fois
+ * connu : lier une classe à un type ne met à jour que le représentant, quel que soit le nombre
+ * de variables reliées. L'union par rang et la compression de chemin donnent un coût amorti
+ * quasi constant (α(n)) par opération.
+ */
+public class TypeVariables {
+    /**
+     * Nœud de la forêt union-find associé à une variable de type.
+     */
+    private static final class Node {
+        private final UnknownType variable;
+        private Node parent = this;
+        private int rank = 0;
+        private Type resolved = null;
+
+        private Node(UnknownType variable) {
+            this.variable = variable;
+        }
+    }
+
+    private final Map<UnknownType, Node> nodes = new HashMap<>();
+
+    /**
+     * Nœud d'une variable, créé au premier accès.
+     * @param variable variable de type
+     * @return son nœud
+     */
+    private Node node(UnknownType variable) {
+        return nodes.computeIfAbsent(variable, Node::new);
+    }
+
+    /**
+     * Représentant de la classe d'un nœud, avec compression de chemin.
+     * @param node nœud de départ
+     * @return nœud représentant
+     */
+    private static Node root(Node node) {
+        while (node.parent != node) {
+            node.parent = node.parent.parent; // Compression par division du chemin
+            node = node.parent;
+        }
+        return node;
+    }
+
+    /**
+     * Trouve le représentant de la classe d'une variable.
+     * @param variable variable de type
+     * @return la variable représentante (elle-même si elle n'est reliée à aucune autre)
+     */
+    public UnknownType find(UnknownType variable) {
+        Node node = nodes.get(variable);
+        return node == null ? variable : root(node).variable;
+    }
+
+    /**
+     * Réunit les classes de deux variables. Si une seule des classes a un type concret,
+     * la classe réunie le garde ; si les deux en ont un, celui de la seconde l'emporte.
+     * @param first première variable
+     * @param second seconde variable
+     */
+    public void union(UnknownType first, UnknownType second) {
+        Node root1 = root(node(first));
+        Node root2 = root(node(second));
+        if (root1 == root2) {
+            return;
+        }
+        Type resolved = root2.resolved != null ? root2.resolved : root1.resolved;
+        if (root1.rank > root2.rank) {
+            root2.parent = root1;
+            root1.resolved = resolved;
+        } else {
+            root1.parent = root2;
+            root2.resolved = resolved;
+            if (root1.rank == root2.rank) {
+                root2.rank++;
+            }
+        }
+    }
+
+    /**
+     * Lie toute la classe d'une variable à un type concret.
+     * @param variable variable de type
+     * @param type type concret
+     */
+    public void bind(UnknownType variable, Type type) {
+        root(node(variable)).resolved = type;
+    }
+
+    /**
+     * Type concret de la classe d'une variable.
+     * @param variable variable de type
+     * @return le type lié à la classe, ou null s'il n'est pas encore connu
+     */
+    public Type resolved(UnknownType variable) {
+        Node node = nodes.get(variable);
+        return node == null ? null : root(node).resolved;
+    }
+
+    /**
+     * Reprend les classes d'un autre ensemble de variables, disjoint de celui-ci
+     * (celles du typage d'un autre corps de fonction). Les nœuds sont partagés, pas copiés :
+     * l'autre ensemble ne doit plus être modifié.
+     * @param other classes à reprendre
+     */
+    public void absorb(TypeVariables other) {
+        nodes.putAll(other.nodes);
+    }
+
+    /**
+     * Associe chaque variable dont la classe est liée à son type concret.
+     * @return les variables résolues
+     */
+    public Map<UnknownType, Type> resolvedTypes() {
+        Map<UnknownType, Type> types = new HashMap<>();
+        for (Node node : nodes.values()) {
+            Type type = root(node).resolved;
+            if (type != null) {
+                types.put(node.variable, type);
+            }
+        }
+        return types;
+    }
+}
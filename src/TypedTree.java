@@ -0,0 +1,75 @@
+import Type.Type;
+import org.antlr.v4.runtime.tree.ParseTree;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Résultats du typage attachés aux nœuds de l'arbre syntaxique, partagés avec la génération de code.
+ * <p>
+ * Le typage y enregistre le type de chaque expression et, pour chaque nœud qui nomme une variable
+ * (déclaration, paramètre, lecture, affectation, print), la déclaration à laquelle le nom se rapporte.
+ * Les types sont enregistrés tels qu'émis pendant la visite (éventuellement des variables de type)
+ * et résolus à la lecture, une fois les contraintes résolues.
+ */
+public class TypedTree {
+    private final Map<ParseTree, Type> types = new IdentityHashMap<>();
+    private final Map<ParseTree, SymbolTable.Symbol> bindings = new IdentityHashMap<>();
+    private final TypeConstraints constraints;
+
+    /**
+     * Constructeur
+     * @param constraints contraintes du typage, qui résolvent les types enregistrés
+     */
+    public TypedTree(TypeConstraints constraints) {
+        this.constraints = constraints;
+    }
+
+    /**
+     * Setter du type d'un nœud
+     * @param node nœud de l'arbre
+     * @param type type émis par le typage
+     */
+    public void setType(ParseTree node, Type type) {
+        types.put(node, type);
+    }
+
+    /**
+     * Getter du type résolu d'un nœud
+     * @param node nœud de l'arbre
+     * @return type résolu, ou null si le nœud n'a pas de type
+     */
+    public Type getType(ParseTree node) {
+        Type type = types.get(node);
+        return type == null ? null : constraints.resolve(type);
+    }
+
+    /**
+     * Setter de la déclaration à laquelle se rapporte un nœud
+     * @param node nœud qui nomme une variable
+     * @param symbol déclaration de la variable
+     */
+    public void bind(ParseTree node, SymbolTable.Symbol symbol) {
+        bindings.put(node, symbol);
+    }
+
+    /**
+     * Reprend les types et déclarations enregistrés pour d'autres nœuds (le corps d'une
+     * fonction typé à part) ; leurs contraintes doivent avoir été reprises par
+     * les contraintes de cet arbre (voir {@link TypeConstraints#absorb(TypeConstraints)}).
+     * @param other résultats à reprendre
+     */
+    public void absorb(TypedTree other) {
+        types.putAll(other.types);
+        bindings.putAll(other.bindings);
+    }
+
+    /**
+     * Getter de la déclaration à laquelle se rapporte un nœud
+     * @param node nœud qui nomme une variable
+     * @return la déclaration, ou null si le nœud n'en nomme pas
+     */
+    public SymbolTable.Symbol getBinding(ParseTree node) {
+        return bindings.get(node);
+    }
+}
@@ -1,7 +1,11 @@
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 // Import des types utilisés
 import Type.ArrayType;
 
+import org.antlr.v4.runtime.misc.Interval;
 import org.antlr.v4.runtime.tree.AbstractParseTreeVisitor;
 
 import Type.Type;
@@ -17,352 +21,249 @@ import org.antlr.v4.runtime.tree.TerminalNode;
  * <p>
  * Elle hérite de {@link AbstractParseTreeVisitor} et implémente {@link grammarTCLVisitor},
  * pour parcourir l'arbre généré par ANTLR et vérifier (ou inférer) les types.
+ * <p>
+ * Le typage se fait en deux temps : la visite associe à chaque nœud un type, éventuellement
+ * une variable de type (UnknownType) pour les auto, et émet des contraintes d'égalité entre
+ * ces types ; les contraintes sont résolues d'un coup ({@link TypeConstraints}) à la fin de
+ * chaque fonction, avant que sa signature ne serve aux fonctions suivantes. En mode parallèle
+ * ({@link #setParallel(boolean)}), chaque corps de fonction est typé par sa propre tâche.
  */
 public class TyperVisitor extends AbstractParseTreeVisitor<Type> implements grammarTCLVisitor<Type> {
     /**
-     * Map global reliant des UnknownType à des Type concrets.
+     * Contraintes entre les types des nœuds, résolues à la fin de chaque fonction.
      */
-    private Map<UnknownType,Type> types = new HashMap<UnknownType,Type>();
+    private final TypeConstraints constraints = new TypeConstraints();
 
     /**
-     * Pile représentant les différents “scopes” (blocs) avec leurs variables.
-     * Chaque élément de la pile est un Map associant un UnknownType à un Type.
+     * Types des expressions et déclarations des noms, par nœud, pour la génération de code.
      */
-    private Stack<Map<UnknownType, Type>> typeScopes = new Stack<>();
+    private final TypedTree typedTree = new TypedTree(constraints);
 
     /**
-     * Pile archivant les anciens scopes une fois qu'on en est sortis.
-     * Utile pour garder un historique des déclarations.
+     * Table des symboles : les différents “scopes” (blocs) avec leurs variables,
+     * indexés par nom.
      */
-    private Stack<Map<UnknownType, Type>> archivedScopes = new Stack<>();
+    private final SymbolTable symbols = new SymbolTable();
 
     /**
-     * Map interne qui relie deux UnknownType pour exprimer qu'ils sont équivalents
-     * (ou doivent le devenir lors de la résolution des types).
+     * Photographies des anciens scopes une fois qu'on en est sortis.
+     * Utile pour garder un historique des déclarations ; conservées seulement
+     * si l'archivage est activé, pour que la mémoire ne dépende pas du nombre de blocs.
      */
-    private Map<UnknownType, UnknownType> autoLinkMap = new HashMap<>();
+    private final List<SymbolTable.Scope> archivedScopes = new ArrayList<>();
 
     /**
-     * Constructeur par défaut.
-     * Il crée un premier scope global, ainsi qu'un scope archivé global.
+     * Archivage des scopes fermés (par défaut si les traces du typage sont actives).
      */
-    public TyperVisitor() {
-        typeScopes.push(new HashMap<>()); // Scope global
-        archivedScopes.push(new HashMap<>()); // Scope global
-    }
+    private boolean archiveScopes = Trace.TYPER.isEnabled();
 
     /**
-     * Trouve la racine représentative d'un UnknownType dans le autoLinkMap.
-     * Cela permet de gérer l'équivalence entre plusieurs UnknownType.
-     *
-     * @param type l'UnknownType à explorer
-     * @return la racine de l'UnknownType (lui-même ou une autre instance)
+     * Cache des signatures de fonctions déjà typées (null si désactivé).
      */
-    private UnknownType find(UnknownType type) {
-        if (!autoLinkMap.containsKey(type)) {
-            return type; // Si aucun lien, retourne lui-même (racine de son propre groupe)
-        }
-        // Compression de chemin pour optimisation
-        UnknownType root = find(autoLinkMap.get(type)); // Trouve la racine récursivement
-        autoLinkMap.put(type, root); // Compression de chemin : met à jour pour pointer directement sur la racine
-        return root;
-    }
-
+    private FunctionCache cache = null;
 
     /**
-     * Relie deux UnknownType entre eux dans le autoLinkMap en déclarant qu'ils sont équivalents.
-     *
-     * @param type1 premier UnknownType
-     * @param type2 second UnknownType
+     * Typage des corps de fonctions en parallèle (voir {@link #setParallel(boolean)}).
      */
-    private void union(UnknownType type1, UnknownType type2) {
-        UnknownType root1 = find(type1);
-        UnknownType root2 = find(type2);
-        if (!root1.equals(root2)) {
-            autoLinkMap.put(root1, root2); // Relie le premier représentant au second
-
-        }
-    }
+    private boolean parallel = false;
 
     /**
-     * Établit un lien entre deux UnknownType si les deux sont effectivement des UnknownType.
-     * Utile pour gérer les cas où on assigne un UnknownType à un autre.
-     *
-     * @param declaredKey         clé (UnknownType) du côté gauche de l'opération
-     * @param declaredType        type concret (ou UnknownType) du côté gauche
-     * @param rightVariableName   nom de la variable ou expression à droite
-     * @param rightType           type concret (ou UnknownType) du côté droit
+     * Mesures des tâches du typage parallèle exécutées hors du thread qui type (null si aucune mesure).
      */
-    private void linkUnknownTypes(UnknownType declaredKey, Type declaredType, String rightVariableName, Type rightType) {
-        // Vérifie que les deux types sont des UnknownType
-        if (declaredType instanceof UnknownType && rightType instanceof UnknownType) {
+    private CompileReport.WorkerCounters workers = null;
 
+    /**
+     * Thread qui type le programme : ses propres compteurs couvrent déjà les tâches qu'il exécute.
+     */
+    private Thread typingThread = null;
 
-            // Recherche de la clé de la variable à droite dans les scopes
-            Map.Entry<UnknownType, Type> foundRightEntry = existsInAllScopes(rightVariableName);
-            if (foundRightEntry == null) {
-                throw new IllegalArgumentException("Variable non déclarée : " + rightVariableName);
-            }
+    /**
+     * Résultats du typage précédent du même source (null si le typage n'est pas incrémental),
+     * remplacés par ceux de ce typage à la fin de {@link #visitMain}.
+     */
+    private TypingHistory history = null;
 
-            UnknownType rightKey = foundRightEntry.getKey();
+    /**
+     * Type de retour de la fonction en cours de typage, contraint par ses return.
+     */
+    private Type currentReturnType = null;
 
+    /**
+     * Signature de la fonction en cours de typage : un appel récursif la contraint directement.
+     */
+    private FunctionType currentFunction = null;
 
-            // Établit la relation via union
-            union(declaredKey, rightKey);
-        }
+    /**
+     * Constructeur par défaut.
+     * Il crée un premier scope global.
+     */
+    public TyperVisitor() {
+        symbols.push(); // Scope global
     }
 
     /**
-     * Propage un type concret à tous les UnknownType qui sont liés
-     * (donc qui partagent la même racine dans autoLinkMap).
+     * Active ou désactive l'archivage des scopes fermés, utilisé par {@link #printArchivedScopes()}.
      *
-     * @param type     l'UnknownType qu'on veut substituer
-     * @param realType le type réel qui va remplacer
+     * @param archiveScopes true pour conserver les scopes fermés
      */
-    private void propagateType(UnknownType type, Type realType) {
-        // Trouve la racine canonique
-        UnknownType root = find(type);
-
-
-        // Mise à jour dans tous les scopes ET dans la table de types globale
-        for (Map.Entry<UnknownType, Type> entry : types.entrySet()) {
-            if (find(entry.getKey()).equals(root)) {
-                applySubstitutionToScope(entry.getKey(), realType);
-                types.put(entry.getKey(), realType);
-            }
-        }
-
-        // S'assurer que tous les types liés sont mis à jour
-        for (Map.Entry<UnknownType, UnknownType> entry : autoLinkMap.entrySet()) {
-            if (find(entry.getKey()).equals(root)) {
-                applySubstitutionToScope(entry.getKey(), realType);
-                types.put(entry.getKey(), realType);
-            }
-        }
-
-        // Mise à jour de la racine
-        applySubstitutionToScope(root, realType);
-        types.put(root, realType);
-
-
+    public void setArchiveScopes(boolean archiveScopes) {
+        this.archiveScopes = archiveScopes;
     }
 
     /**
-     * Force la variable donnée à devenir un type INT, si c'est un UnknownType.
-     * Propage ensuite cette information dans tous les scopes.
+     * Active le cache des signatures : une fonction dont le code et les signatures des
+     * fonctions appelées n'ont pas changé n'est pas re-typée.
      *
-     * @param variableName nom de la variable à unifier
-     * @param variableType type actuel de la variable
+     * @param cache cache des fonctions (null pour le désactiver)
      */
-    private void unifyToInt(String variableName, Type variableType) {
-        if (variableType instanceof UnknownType) {
-
-            Map.Entry<UnknownType, Type> foundEntry = existsInAllScopes(variableName);
-            if (foundEntry == null) {
-                throw new IllegalArgumentException("Variable non déclarée : " + variableName);
-            }
-
-            UnknownType key = foundEntry.getKey();
-
-            propagateType(key, new PrimitiveType(Type.Base.INT));
-        }
+    public void setCache(FunctionCache cache) {
+        this.cache = cache;
     }
 
     /**
-     * Force la variable donnée à devenir un type BOOL, si c'est un UnknownType.
-     * Propage ensuite cette information dans tous les scopes.
+     * Active le typage des corps de fonctions en parallèle, sur le pool {@link ForkJoinPool}
+     * de la tâche courante (le pool commun hors d'un pool) : les signatures sont déclarées
+     * d'abord, puis chaque corps est typé par une tâche qui n'attend que les fonctions
+     * appelées dont la signature contient des auto.
      *
-     * @param variableName nom de la variable à unifier
-     * @param variableType type actuel de la variable
+     * @param parallel true pour typer les corps en parallèle
      */
-    private void unifyToBool(String variableName, Type variableType) {
-        // Vérifie si le type est un UnknownType
-        if (variableType instanceof UnknownType) {
-
-
-            // Recherche la clé de la variable dans tous les scopes
-            Map.Entry<UnknownType, Type> foundEntry = existsInAllScopes(variableName);
-            if (foundEntry == null) {
-                throw new IllegalArgumentException("Variable non déclarée : " + variableName);
-            }
-
-            UnknownType key = foundEntry.getKey();
-
-
-            // Effectue l'unification avec BOOL
-            Map<UnknownType, Type> unification = key.unify(new PrimitiveType(Type.Base.BOOL));
-
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
 
-            // Propage les changements
-            for (Map.Entry<UnknownType, Type> entry : unification.entrySet()) {
-                propagateType(entry.getKey(), entry.getValue());
-            }
-        }
+    /**
+     * Mesure le temps CPU et les allocations des tâches du typage parallèle exécutées sur
+     * d'autres threads que celui qui type, pour le rapport de compilation.
+     *
+     * @param workers mesures à compléter (null pour ne pas mesurer)
+     */
+    public void setWorkerCounters(CompileReport.WorkerCounters workers) {
+        this.workers = workers;
     }
 
     /**
-     * @return la pile des scopes (du plus local au global)
+     * Active le typage incrémental : une fonction dont le texte n'a pas changé depuis le typage
+     * précédent, et dont les fonctions appelées ont gardé leur signature, n'est pas re-typée.
+     * Prend le pas sur le typage parallèle.
+     *
+     * @param history résultats du typage précédent (un historique vide au premier typage),
+     *                ou null pour typer tout le programme
      */
-    public Stack<Map<UnknownType, Type>> getTypeScopes() {
-        return typeScopes;
+    public void setHistory(TypingHistory history) {
+        this.history = history;
     }
 
     /**
-     * @return la pile des scopes archivés (scopes fermés)
+     * @return les résultats de ce typage, par fonction, à passer au typage suivant
+     *         (null si le typage n'est pas incrémental)
      */
-    public Stack<Map<UnknownType, Type>> getarchivedScopes() {
-        return archivedScopes;
+    public TypingHistory getHistory() {
+        return history;
     }
 
     /**
-     * @return la Map globale des UnknownType et leur Type associé
+     * Erreur levée pendant le parcours (nom non déclaré, déclaration en double, nombre
+     * d'arguments) : les contraintes déjà émises sont résolues d'abord, pour qu'une
+     * incompatibilité de types située plus haut dans le source soit signalée en premier.
+     *
+     * @param error erreur à lever si les contraintes en attente sont satisfaites
+     * @return l'erreur
      */
-    public Map<UnknownType, Type> getTypes() {
-        return types;
+    private RuntimeException sourceError(RuntimeException error) {
+        constraints.solve();
+        return error;
     }
 
     /**
-     * Vérifie si une variable avec un certain nom existe déjà dans le scope donné.
+     * Décrit les signatures des fonctions appelées dans un sous-arbre, dans l'ordre des appels.
      *
-     * @param variableName nom de la variable à chercher
-     * @param currentScope scope dans lequel on cherche
-     * @return true si la variable est trouvée, sinon false
+     * @param tree sous-arbre à parcourir
+     * @param sb description en cours de construction
      */
-    private boolean VarExistsInCurrentScope(String variableName, Map<UnknownType, Type> currentScope) {
-        for (UnknownType key : currentScope.keySet()) {
-            if (key.getVarName().equals(variableName)) {
-                return true; // La variable existe déjà dans le scope courant
-            }
+    private void appendCalleeSignatures(ParseTree tree, StringBuilder sb) {
+        if (tree instanceof grammarTCLParser.CallContext) {
+            String callee = ((grammarTCLParser.CallContext) tree).VAR().getText();
+            sb.append(callee).append(':').append(FunctionCache.describe(findFunctionType(callee))).append(';');
+        }
+        for (int i = 0; i < tree.getChildCount(); i++) {
+            appendCalleeSignatures(tree.getChild(i), sb);
         }
-        return false; // La variable n'existe pas dans le scope courant
     }
 
+
     /**
-     * Vérifie si une fonction avec un certain nom existe déjà dans le scope donné.
-     *
-     * @param functionName nom de la fonction à chercher
-     * @param currentScope scope dans lequel on cherche
-     * @return true si la fonction est trouvée, sinon false
+     * @return la table des symboles (scopes ouverts)
      */
-    private boolean FunctionExistsInCurrentScope(String functionName, Map<UnknownType, Type> currentScope) {
-        for (Map.Entry<UnknownType, Type> entry : currentScope.entrySet()) {
-            UnknownType key = entry.getKey();
-            Type value = entry.getValue();
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
 
-            // Vérifie si le nom correspond et si la valeur est une instance de FunctionType
-            if (key.getVarName().equals(functionName) && value instanceof FunctionType) {
-                return true; // La fonction existe déjà dans le scope courant
-            }
+    /**
+     * @return le contenu des scopes archivés (scopes fermés), vide si l'archivage est désactivé
+     */
+    public List<Map<UnknownType, Type>> getarchivedScopes() {
+        List<Map<UnknownType, Type>> scopes = new ArrayList<>();
+        for (SymbolTable.Scope scope : archivedScopes) {
+            scopes.add(scope.toMap());
         }
-        return false; // La fonction n'existe pas dans le scope courant
+        return scopes;
+    }
+
+    /**
+     * @return les types et les déclarations enregistrés pour chaque nœud de l'arbre
+     */
+    public TypedTree getTypedTree() {
+        return typedTree;
+    }
+
+    /**
+     * @return la Map globale des UnknownType et leur Type associé
+     */
+    public Map<UnknownType, Type> getTypes() {
+        return constraints.getVariables().resolvedTypes();
     }
 
     /**
-     * Vérifie si une variable existe déjà dans un scope parent (pas le scope courant, mais ceux au-dessus).
+     * Vérifie si une variable avec un certain nom existe déjà dans le scope courant.
      *
      * @param variableName nom de la variable à chercher
      * @return true si la variable est trouvée, sinon false
      */
-    private boolean VarExistsInParentScopes(String variableName) {
-        for (int i = typeScopes.size() - 2; i >= 0; i--) { // Parcourt les scopes parents
-            Map<UnknownType, Type> parentScope = typeScopes.get(i);
-            for (UnknownType key : parentScope.keySet()) {
-                if (key.getVarName().equals(variableName)) {
-                    return true; // La variable existe dans un scope parent
-                }
-            }
-        }
-        return false; // La variable n'existe pas dans les scopes parents
+    private boolean VarExistsInCurrentScope(String variableName) {
+        return symbols.isDeclaredInCurrentScope(variableName);
     }
 
     /**
-     * Vérifie si une fonction existe déjà dans un scope parent (pas le scope courant, mais ceux au-dessus).
+     * Vérifie si une fonction avec un certain nom existe déjà dans le scope courant.
      *
      * @param functionName nom de la fonction à chercher
      * @return true si la fonction est trouvée, sinon false
      */
-    private boolean FunctionExistsInParentScopes(String functionName) {
-        // Iterate through parent scopes from the second-to-last to the root
-        for (int i = typeScopes.size() - 2; i >= 0; i--) {
-            Map<UnknownType, Type> parentScope = typeScopes.get(i);
-            for (Map.Entry<UnknownType, Type> entry : parentScope.entrySet()) {
-                // Check if the variable name matches and if it is a FunctionType
-                if (entry.getKey().getVarName().equals(functionName) && entry.getValue() instanceof FunctionType) {
-                    return true; // The function exists in a parent scope
-                }
-            }
-        }
-        return false; // The function does not exist in the parent scopes
+    private boolean FunctionExistsInCurrentScope(String functionName) {
+        return symbols.isFunctionDeclaredInCurrentScope(functionName);
     }
 
     /**
-     * Recherche dans tous les scopes (du plus local au global) le FunctionType associé
+     * Recherche (du scope le plus local au global) le FunctionType associé
      * à la fonction demandée.
      *
      * @param functionName nom de la fonction
      * @return le FunctionType si trouvé, sinon null
      */
     private FunctionType findFunctionType(String functionName) {
-        // Check the current scope
-        Map<UnknownType, Type> currentScope = typeScopes.peek();
-        for (Map.Entry<UnknownType, Type> entry : currentScope.entrySet()) {
-            if (entry.getKey().getVarName().equals(functionName) && entry.getValue() instanceof FunctionType) {
-                return (FunctionType) entry.getValue();
-            }
-        }
-
-        // Check the parent scopes
-        for (int i = typeScopes.size() - 2; i >= 0; i--) {
-            Map<UnknownType, Type> parentScope = typeScopes.get(i);
-            for (Map.Entry<UnknownType, Type> entry : parentScope.entrySet()) {
-                if (entry.getKey().getVarName().equals(functionName) && entry.getValue() instanceof FunctionType) {
-                    return (FunctionType) entry.getValue();
-                }
-            }
-        }
-
-        // If not found in any scope
-        return null;
+        return symbols.lookupFunction(functionName);
     }
 
     /**
-     * Applique une substitution (mise à jour d'un UnknownType) dans le scope où
-     * la variable a été déclarée.
-     *
-     * @param declaredKey la clé (UnknownType)
-     * @param updatedType le nouveau type
-     */
-    private void applySubstitutionToScope(UnknownType declaredKey, Type updatedType) {
-        // Parcourt les scopes du plus proche au plus éloigné
-        for (int i = typeScopes.size() - 1; i >= 0; i--) {
-            Map<UnknownType, Type> scope = typeScopes.get(i);
-
-            // Si la variable est déclarée dans ce scope, applique la substitution
-            if (scope.containsKey(declaredKey)) {
-                scope.put(declaredKey, updatedType);
-                break; // Arrête la recherche après avoir trouvé le scope de déclaration
-            }
-        }
-    }
-
-    /**
-     * Cherche une variable dans tous les scopes par son nom.
+     * Cherche une variable par son nom : sa déclaration la plus interne.
      *
      * @param variableName nom de la variable
-     * @return l'entrée Map.Entry avec la clé UnknownType et sa valeur Type,
-     *         ou null si non trouvée
-     */
-    private Map.Entry<UnknownType, Type> existsInAllScopes(String variableName) {
-        // Parcourt les scopes de la pile, du bloc courant au global
-        for (int i = typeScopes.size() - 1; i >= 0; i--) {
-            Map<UnknownType, Type> currentScope = typeScopes.get(i);
-            for (Map.Entry<UnknownType, Type> entry : currentScope.entrySet()) {
-                if (entry.getKey().getVarName().equals(variableName)) {
-                    return entry; // Retourne l'entrée trouvée
-                }
-            }
-        }
-        return null; // Retourne null si la variable n'est pas trouvée
+     * @return la déclaration, avec la clé UnknownType et son type déclaré
+     *         (éventuellement une variable de type), ou null si non trouvée
+     */
+    private SymbolTable.Symbol existsInAllScopes(String variableName) {
+        return symbols.lookup(variableName);
     }
 
     /**
@@ -370,144 +271,82 @@ public class TyperVisitor extends AbstractParseTreeVisitor<Type> implements gram
      *
      * @param variable     la clé (UnknownType)
      * @param declaredType le type déclaré
-     * @param currentScope le scope dans lequel on ajoute la variable
+     * @return la déclaration créée
      */
-    private void addVariableToScope(UnknownType variable, Type declaredType, Map<UnknownType, Type> currentScope) {
-        // Ajoute la variable au scope courant
-        currentScope.put(variable, declaredType);
+    private SymbolTable.Symbol addVariableToScope(UnknownType variable, Type declaredType) {
+        return symbols.declare(variable, declaredType);
+    }
 
+    /**
+     * Visite un nœud et enregistre son type s'il s'agit d'une expression.
+     *
+     * @param tree nœud à visiter
+     * @return le type du nœud
+     */
+    @Override
+    public Type visit(ParseTree tree) {
+        Type type = tree.accept(this);
+        if (tree instanceof grammarTCLParser.ExprContext) {
+            typedTree.setType(tree, type);
+        }
+        return type;
     }
 
 
     /**
-     * Affiche dans la console le contenu des archives de scopes,
-     * pour information ou debug.
+     * Écrit dans les traces du typage le contenu des archives de scopes,
+     * pour information ou debug. Ne fait rien si ces traces sont désactivées.
      */
     public void printArchivedScopes() {
+        if (!Trace.TYPER.isEnabled()) return;
 
         for (int i = archivedScopes.size() - 1; i >= 0; i--) {
-            System.out.println("Scope archivé niveau " + (archivedScopes.size() - i) + ":");
-            Map<UnknownType, Type> scope = archivedScopes.get(i);
+            Trace.TYPER.log("Scope archivé niveau " + (archivedScopes.size() - i) + ":");
+            Map<UnknownType, Type> scope = archivedScopes.get(i).toMap();
             for (Map.Entry<UnknownType, Type> entry : scope.entrySet()) {
-                System.out.println("    " + entry.getKey().getVarName() + " -> " + entry.getValue());
+                Trace.TYPER.log("    " + entry.getKey().getVarName() + " -> " + constraints.resolve(entry.getValue()));
             }
         }
     }
 
 
     /**
-     * Vérifie que l'expression visitée est un bool,
-     * sinon lève une exception.
+     * Contraint l'expression à être un bool. Retourne un bool.
      */
     @Override
     public Type visitNegation(grammarTCLParser.NegationContext ctx) {
-
-        String right_string = ctx.expr().getText(); // soit un bool
-
-        Type right_type = visit(ctx.expr());
-
-        unifyToBool(right_string, right_type);
-        Map.Entry<UnknownType, Type> RightEntry = existsInAllScopes(right_string);
-        if(RightEntry != null){
-            right_type = RightEntry.getValue();
-        }
-        Type bool = new PrimitiveType(Type.Base.BOOL);
-        if (!right_type.equals(bool)) {
-            throw new UnsupportedOperationException("cannot compare non bool type");
-        }
-        return bool;
+        constraints.require(PrimitiveType.BOOL, visit(ctx.expr()), ctx, "cannot compare non bool type");
+        return PrimitiveType.BOOL;
     }
 
     /**
-     * Vérifie que les deux membres de la comparaison sont des int.
+     * Contraint les deux membres de la comparaison à être des int.
      * Retourne un bool.
      */
     @Override
-    public Type visitComparison(grammarTCLParser.ComparisonContext ctx) { // on vérifie que le membre de gauche et droite sont des int
-
-        Type left_type = visit(ctx.expr(0));
-        Type right_type = visit(ctx.expr(1));
-        String left_string = ctx.expr(0).getText();
-        String right_string = ctx.expr(1).getText();
-
-        // Unifie les types des membres gauche et droit avec INT si nécessaire
-        unifyToInt(left_string, left_type);
-        unifyToInt(right_string, right_type);
-
-
-        Map.Entry<UnknownType, Type> LeftEntry = existsInAllScopes(left_string);
-        Map.Entry<UnknownType, Type> RightEntry = existsInAllScopes(right_string);
-        if(LeftEntry != null){ // si leftEntry ou RightEntry = null alors ce ne sont pas des variables mais des int donc
-            left_type = LeftEntry.getValue(); // donc on ne les remplace avc les valeurs mise à jours
-        }
-        if(RightEntry != null){
-            right_type = RightEntry.getValue();
-        }
-        Type type_int = new PrimitiveType(Type.Base.INT);
-        if (!left_type.equals(type_int)) {
-            throw new UnsupportedOperationException("le terme de gauche n'est pas un int");
-        }
-        if (!right_type.equals(type_int)) {
-            throw new UnsupportedOperationException("le terme de droite n'est pas un int");
-        }
-
-        return new PrimitiveType(Type.Base.BOOL);
+    public Type visitComparison(grammarTCLParser.ComparisonContext ctx) { // on contraint le membre de gauche et droite à être des int
+        constraints.require(PrimitiveType.INT, visit(ctx.expr(0)), ctx.expr(0), "le terme de gauche n'est pas un int");
+        constraints.require(PrimitiveType.INT, visit(ctx.expr(1)), ctx.expr(1), "le terme de droite n'est pas un int");
+        return PrimitiveType.BOOL;
     }
 
     /**
-     * Vérifie que les deux membres (gauche et droite) sont des bool, retourne un bool.
+     * Contraint les deux membres (gauche et droite) à être des bool, retourne un bool.
      */
     @Override
-    public Type visitOr(grammarTCLParser.OrContext ctx) { // on vérifie que les deux termes de gauche et droite sont des bools donc quasiment comme égalité
-
-        Type left_type = visit(ctx.expr(0));
-        Type right_type = visit(ctx.expr(1));
-        String left_string = ctx.expr(0).getText();
-        String right_string = ctx.expr(1).getText();
-
-        Type bool = new PrimitiveType(Type.Base.BOOL);
-        unifyToBool(left_string, left_type);
-        unifyToBool(right_string, right_type);
-
-
-        Map.Entry<UnknownType, Type> LeftEntry = existsInAllScopes(left_string);
-        Map.Entry<UnknownType, Type> RightEntry = existsInAllScopes(right_string);
-        if(LeftEntry != null){ // si leftEntry ou RightEntry = null alors ce ne sont pas des variables mais des int donc
-            left_type = LeftEntry.getValue(); // donc on ne les remplace avc les valeurs mise à jours
-        }
-        if(RightEntry != null){
-            right_type = RightEntry.getValue();
-        }
-        if (!left_type.equals(bool)) {
-            throw new UnsupportedOperationException("le terme de gauche n'est pas un boolean");
-        }
-        if (!right_type.equals(bool)) {
-            throw new UnsupportedOperationException("le terme de droite n'est pas un boolean");
-        }
-        return new PrimitiveType(Type.Base.BOOL);
+    public Type visitOr(grammarTCLParser.OrContext ctx) {
+        constraints.require(PrimitiveType.BOOL, visit(ctx.expr(0)), ctx.expr(0), "le terme de gauche n'est pas un boolean");
+        constraints.require(PrimitiveType.BOOL, visit(ctx.expr(1)), ctx.expr(1), "le terme de droite n'est pas un boolean");
+        return PrimitiveType.BOOL;
     }
 
     /**
-     * Vérifie que l'expression est un int (en forçant si c'est un UnknownType).
-     * Retourne un int.
+     * Contraint l'expression à être un int. Retourne un int.
      */
     @Override
     public Type visitOpposite(grammarTCLParser.OppositeContext ctx) { // comme VisitNegation sauf qu'on veut juste que l'expression soit un entier
-
-        String right_string = ctx.expr().getText(); // soit un bool
-
-        Type right_type = visit(ctx.expr());
-
-        unifyToInt(right_string, right_type);
-        Map.Entry<UnknownType, Type> RightEntry = existsInAllScopes(right_string);
-        if(RightEntry != null){
-            right_type = RightEntry.getValue();
-        }
-        Type type_int = new PrimitiveType(Type.Base.INT);
-        if (!right_type.equals(type_int)) {
-            throw new UnsupportedOperationException("cannot do opposite on non int type");
-        }
-        return type_int;
+        constraints.require(PrimitiveType.INT, visit(ctx.expr()), ctx, "cannot do opposite on non int type");
+        return PrimitiveType.INT;
     }
 
     /**
@@ -515,50 +354,19 @@ public class TyperVisitor extends AbstractParseTreeVisitor<Type> implements gram
      */
     @Override
     public Type visitInteger(grammarTCLParser.IntegerContext ctx) {
-        return new PrimitiveType(Type.Base.INT); // Retourne un type INT
+        return PrimitiveType.INT; // Retourne un type INT
     }
 
     /**
-     * Vérifie l'accès dans un tableau : le premier membre doit être un ArrayType,
+     * Accès dans un tableau : le premier membre doit être un ArrayType,
      * le deuxième membre (l'indice) doit être un int.
      * Retourne le type des éléments du tableau.
      */
     @Override
     public Type visitTab_access(grammarTCLParser.Tab_accessContext ctx) {
-
-
-        // Récupération de la variable de gauche (le tableau)
-        String left_member = ctx.expr(0).getText();
-
-
-        // Vérification de l'existence de la variable
-        Map.Entry<UnknownType, Type> left_entry = existsInAllScopes(left_member);
-        if (left_entry == null) {
-            throw new UnsupportedOperationException("La variable " + left_member + " n'a pas été déclarée");
-        }
-
-        // Vérification que la variable est bien un tableau
-        Type left_type = left_entry.getValue();
-        if (!(left_type instanceof ArrayType)) {
-            throw new UnsupportedOperationException("La variable " + left_member + " n'est pas un tableau.");
-        }
-
-        // Récupération du type des éléments du tableau
-        ArrayType arrayType = (ArrayType) left_type;
-        Type elementType = arrayType.getTabType();
-
-
-        // Vérification de l'indice (membre de droite)
-        String right_member = ctx.expr(1).getText();
-
-
-        Type right_type = visit(ctx.expr(1));
-        Type type_int = new PrimitiveType(Type.Base.INT);
-        if (!right_type.equals(type_int)) {
-            throw new UnsupportedOperationException("L'indice du tableau " + right_member + " n'est pas un entier.");
-        }
-
-        // Retourne le type des éléments du tableau
+        Type elementType = new UnknownType(); // Type des éléments, déterminé par le tableau
+        constraints.require(ArrayType.of(elementType), visit(ctx.expr(0)), ctx.expr(0), "L'expression indexée n'est pas un tableau");
+        constraints.require(PrimitiveType.INT, visit(ctx.expr(1)), ctx.expr(1), "L'indice du tableau n'est pas un entier");
         return elementType;
     }
 
@@ -573,76 +381,50 @@ public class TyperVisitor extends AbstractParseTreeVisitor<Type> implements gram
     }
 
     /**
-     * Visite l'appel d'une fonction, vérifie la cohérence des types de paramètres
-     * et retourne le type de retour.
+     * Visite l'appel d'une fonction : contraint chaque paramètre fourni au type
+     * du paramètre attendu et retourne le type de retour. Les auto restés libres dans
+     * la signature sont inférés à chaque appel, indépendamment des autres appels.
      */
     @Override
     public Type visitCall(grammarTCLParser.CallContext ctx) {
 
-
         // Récupération du nom de la fonction
         String functionName = ctx.VAR().getText();
-        if (functionName == null) {
-            throw new IllegalArgumentException("Function name cannot be null.");
-        }
-
 
         // Recherche du type de la fonction
         FunctionType functionType = findFunctionType(functionName);
         if (functionType == null) {
-            throw new UnsupportedOperationException("Function '" + functionName + "' does not exist in the current or parent scopes");
-        }
-
-
-
-        // Récupération du type de retour et des paramètres attendus
-        Type returnType = functionType.getReturnType();
-        List<Type> expectedParams = functionType.getArgsTypes();
-
-
-        // Vérification des paramètres fournis
-        List<grammarTCLParser.ExprContext> paramsExpr = ctx.expr();
-        if (paramsExpr == null) {
-            paramsExpr = new ArrayList<>();
+            throw sourceError(new UnsupportedOperationException("Function '" + functionName + "' does not exist in the current or parent scopes"));
         }
 
-
-        // Vérification du nombre de paramètres
-        if (paramsExpr.size() != expectedParams.size()) {
-            throw new IllegalArgumentException("Function call '" + functionName + "' has mismatched parameter count. Expected: " +
-                    expectedParams.size() + ", Provided: " + paramsExpr.size());
+        // Une signature sans auto libre est utilisée telle quelle, sans copie
+        if (functionType != currentFunction) {
+            functionType = (FunctionType) constraints.instantiate(functionType);
         }
 
-        // Validation et unification des types des paramètres
-        for (int i = 0; i < paramsExpr.size(); i++) {
-            Type paramType = visit(paramsExpr.get(i)); // Obtention du type du paramètre fourni
-            Type expectedType = functionType.getArgsType(i);
-
-
-
-            if (expectedType instanceof UnknownType) {
-
-                Map<UnknownType, Type> unification = ((UnknownType) expectedType).unify(paramType);
-
-                for (Map.Entry<UnknownType, Type> entry : unification.entrySet()) {
-                    propagateType(entry.getKey(), entry.getValue());
-                }
-
-                // Force la mise à jour immédiate de expectedType
-                expectedType = expectedType.substituteAll(unification);
-                functionType.getArgsTypes().set(i, expectedType);
+        // Vérification du nombre de paramètres, sans construire la liste des expressions
+        int nbParams = 0;
+        for (int i = 0; i < ctx.getChildCount(); i++) {
+            if (ctx.getChild(i) instanceof grammarTCLParser.ExprContext) {
+                nbParams++;
             }
+        }
+        if (nbParams != functionType.getNbArgs()) {
+            throw sourceError(new IllegalArgumentException("Function call '" + functionName + "' has mismatched parameter count. Expected: " +
+                    functionType.getNbArgs() + ", Provided: " + nbParams));
+        }
 
-            // Vérification après unification
-
-            if (!expectedType.equals(paramType)) {
-                throw new IllegalArgumentException("Type mismatch for parameter " + (i + 1) + " in function call '" + functionName +
-                        "'. Expected: " + expectedType + ", Provided: " + paramType);
+        // Contraintes entre les paramètres attendus et fournis
+        int param = 0;
+        for (int i = 0; i < ctx.getChildCount(); i++) {
+            if (ctx.getChild(i) instanceof grammarTCLParser.ExprContext) {
+                grammarTCLParser.ExprContext paramExpr = (grammarTCLParser.ExprContext) ctx.getChild(i);
+                constraints.require(functionType.getArgsType(param++), visit(paramExpr), paramExpr,
+                        "Type de paramètre incompatible dans l'appel de ", functionName);
             }
         }
 
-
-        return returnType; // Retourne le type de retour de la fonction
+        return functionType.getReturnType(); // Retourne le type de retour de la fonction
     }
 
 
@@ -651,214 +433,89 @@ public class TyperVisitor extends AbstractParseTreeVisitor<Type> implements gram
      */
     @Override
     public Type visitBoolean(grammarTCLParser.BooleanContext ctx) {
-        return new PrimitiveType(Type.Base.BOOL);
+        return PrimitiveType.BOOL;
     }
 
     /**
-     * Vérifie que les deux membres (gauche et droite) sont des bool, retourne un bool.
+     * Contraint les deux membres (gauche et droite) à être des bool, retourne un bool.
      * Même logique que pour OR.
      */
     @Override
     public Type visitAnd(grammarTCLParser.AndContext ctx) { // se comporte comme un OR
-
-
-        Type left_type = visit(ctx.expr(0));
-        Type right_type = visit(ctx.expr(1));
-        String left_string = ctx.expr(0).getText();
-        String right_string = ctx.expr(1).getText();
-
-        Type bool = new PrimitiveType(Type.Base.BOOL);
-        unifyToBool(left_string, left_type);
-        unifyToBool(right_string, right_type);
-
-
-        Map.Entry<UnknownType, Type> LeftEntry = existsInAllScopes(left_string);
-        Map.Entry<UnknownType, Type> RightEntry = existsInAllScopes(right_string);
-        if(LeftEntry != null){ // si leftEntry ou RightEntry = null alors ce ne sont pas des variables mais des int donc
-            left_type = LeftEntry.getValue(); // donc on ne les remplace avc les valeurs mise à jours
-        }
-        if(RightEntry != null){
-            right_type = RightEntry.getValue();
-        }
-        if (!left_type.equals(bool) & !right_type.equals(bool)) {
-            throw new UnsupportedOperationException("le terme de gauche n'est pas un boolean");
-        }
-        return new PrimitiveType(Type.Base.BOOL);
+        constraints.require(PrimitiveType.BOOL, visit(ctx.expr(0)), ctx.expr(0), "le terme de gauche n'est pas un boolean");
+        constraints.require(PrimitiveType.BOOL, visit(ctx.expr(1)), ctx.expr(1), "le terme de droite n'est pas un boolean");
+        return PrimitiveType.BOOL;
     }
 
     /**
-     * Visite une variable, retourne son type si elle a déjà été déclarée,
-     * sinon lève une exception.
+     * Visite une variable, retourne son type déclaré (une variable de type si elle est auto)
+     * si elle a déjà été déclarée, sinon lève une exception.
      */
     @Override
     public Type visitVariable(grammarTCLParser.VariableContext ctx) {
         // Récupère le nom de la variable depuis le contexte
         String variableName = ctx.VAR().getText();
 
-
-        // Utilise existsInAllScopes pour chercher la variable
-        Map.Entry<UnknownType, Type> foundEntry = existsInAllScopes(variableName);
+        SymbolTable.Symbol foundEntry = existsInAllScopes(variableName);
 
         // Si la variable n'est pas déclarée
         if (foundEntry == null) {
-            throw new IllegalArgumentException("Variable non déclarée : " + variableName);
+            throw sourceError(new IllegalArgumentException("Variable non déclarée : " + variableName));
         }
-
-        UnknownType declaredKey = foundEntry.getKey();
-        Type declaredType = foundEntry.getValue();
-
-        // Affiche les informations trouvées
-
-
+        typedTree.bind(ctx, foundEntry);
 
         // Retourne le type trouvé ou la clé si le type est null
-        return declaredType != null ? declaredType : declaredKey;
+        Type declaredType = foundEntry.getValue();
+        return declaredType != null ? declaredType : foundEntry.getKey();
     }
 
     /**
-     * Vérifie que l'opération de multiplication est faite entre deux int,
-     * sinon lève une exception.
-     * Retourne un int si tout va bien.
+     * Contraint les deux membres de la multiplication à être des int.
+     * Retourne un int.
      */
     @Override
     public Type visitMultiplication(grammarTCLParser.MultiplicationContext ctx) {
-
-        Type left_type = visit(ctx.expr(0));
-        Type right_type = visit(ctx.expr(1));
-        String left_string = ctx.expr(0).getText();
-        String right_string = ctx.expr(1).getText();
-
-        // Unifie les types des membres gauche et droit avec INT si nécessaire
-
-        unifyToInt(left_string, left_type);
-        unifyToInt(right_string, right_type);
-
-
-        Map.Entry<UnknownType, Type> LeftEntry = existsInAllScopes(left_string);
-        Map.Entry<UnknownType, Type> RightEntry = existsInAllScopes(right_string);
-        if(LeftEntry != null){ // si leftEntry ou RightEntry = null alors ce ne sont pas des variables mais des int donc
-            left_type = LeftEntry.getValue(); // donc on ne les remplace avc les valeurs mise à jours
-        }
-        if(RightEntry != null){
-            right_type = RightEntry.getValue();
-        }
-
-        if(!left_type.equals(right_type)){
-            throw new UnsupportedOperationException("vous Multiplier des expr de différents type");
-        }
-        if (left_type.equals(new PrimitiveType(Type.Base.INT))) {
-
-            return new PrimitiveType(Type.Base.INT);
-        } else {
-            throw new UnsupportedOperationException("La Multiplication est uniquement supportée pour des types INT.");
-        }
+        constraints.require(PrimitiveType.INT, visit(ctx.expr(0)), ctx.expr(0), "La Multiplication est uniquement supportée pour des types INT");
+        constraints.require(PrimitiveType.INT, visit(ctx.expr(1)), ctx.expr(1), "La Multiplication est uniquement supportée pour des types INT");
+        return PrimitiveType.INT;
     }
 
     /**
-     * Vérifie que les deux membres (gauche et droite) de l'égalité
-     * sont du même type. Retourne un bool.
+     * Contraint les deux membres (gauche et droite) de l'égalité
+     * à être du même type. Retourne un bool.
      */
     @Override
     public Type visitEquality(grammarTCLParser.EqualityContext ctx) { //l'unification fonctionne comme l'assignement
-
-        String left_string = ctx.expr(0).getText();
-        String right_string = ctx.expr(1).getText();
-
-
-        Type left_type = visit(ctx.expr(0));
-        Type right_type = visit(ctx.expr(1));
-
-
-        if (left_type instanceof UnknownType) {
-            // Recherche de la variable dans tous les scopes
-            Map.Entry<UnknownType, Type> leftEntry = existsInAllScopes(left_string);
-            // Si la variable n'est pas déclarée
-            if (leftEntry == null) {
-                throw new IllegalArgumentException("Variable non déclarée : " + left_string);
-            }
-        }
-        if (right_type instanceof UnknownType) {
-            // Recherche de la variable dans tous les scopes
-            Map.Entry<UnknownType, Type> RightEntry = existsInAllScopes(right_string);
-            // Si la variable n'est pas déclarée
-            if (RightEntry == null) {
-                throw new IllegalArgumentException("Variable non déclarée : " + left_string);
-            }
-        }
-        if (right_type instanceof UnknownType && left_type instanceof UnknownType) {
-            Map.Entry<UnknownType, Type> leftEntry = existsInAllScopes(left_string);
-            Map.Entry<UnknownType, Type> RightEntry = existsInAllScopes(right_string);
-
-            linkUnknownTypes(leftEntry.getKey(), leftEntry.getValue(), right_string, RightEntry.getValue());
-        }
-
-
-
-
-        if (!left_type.equals(right_type)) {
-            throw new UnsupportedOperationException("vous comparer des expr de différents type");
-        }
-        return new PrimitiveType(Type.Base.BOOL);
+        constraints.require(visit(ctx.expr(0)), visit(ctx.expr(1)), ctx, "vous comparer des expr de différents type");
+        return PrimitiveType.BOOL;
     }
 
     /**
-     * Vérifie que tous les éléments sont du même type, puis
+     * Contraint tous les éléments à être du même type, puis
      * retourne un ArrayType de ce type.
      */
     @Override
     public Type visitTab_initialization(grammarTCLParser.Tab_initializationContext ctx) {
-
-        String variableName = ctx.expr(0).getText();
-
-        Type previous_type = visit(ctx.expr(0));
-        for (var expr : ctx.expr()) { // on parcourt la liste et on compare chaque type de nombre entre eux.
-
-            Type type_valeurs = visit(expr);
-
-
-            if (!previous_type.equals(type_valeurs)) {
-                throw new UnsupportedOperationException("Votre tableau a différents types");
-            }
+        List<grammarTCLParser.ExprContext> values = ctx.expr();
+        if (values.isEmpty()) {
+            return ArrayType.of(new UnknownType()); // Tableau vide : type des éléments inféré plus tard
         }
-        Type Array_type = new ArrayType(previous_type);
-        return Array_type; // si la visite s'est bien passé alors tous les elements du tab sont du même type que le premier
+        Type elementType = visit(values.get(0));
+        for (int i = 1; i < values.size(); i++) { // chaque élément doit avoir le type du premier
+            constraints.require(elementType, visit(values.get(i)), values.get(i), "Votre tableau a différents types");
+        }
+        return ArrayType.of(elementType);
     }
 
     /**
-     * Vérifie que l'addition est faite entre deux int,
-     * sinon lève une exception. Retourne un int si OK.
+     * Contraint les deux membres de l'addition à être des int.
+     * Retourne un int.
      */
     @Override
     public Type visitAddition(grammarTCLParser.AdditionContext ctx) {
-        Type left_type = visit(ctx.expr(0));
-        Type right_type = visit(ctx.expr(1));
-        String left_string = ctx.expr(0).getText();
-        String right_string = ctx.expr(1).getText();
-
-        // Unifie les types des membres gauche et droit avec INT si nécessaire
-        unifyToInt(left_string, left_type);
-        unifyToInt(right_string, right_type);
-
-
-        Map.Entry<UnknownType, Type> LeftEntry = existsInAllScopes(left_string);
-        Map.Entry<UnknownType, Type> RightEntry = existsInAllScopes(right_string);
-        if(LeftEntry != null){ // si leftEntry ou RightEntry = null alors ce ne sont pas des variables mais des int donc
-            left_type = LeftEntry.getValue(); // donc on ne les remplace avc les valeurs mise à jours
-        }
-        if(RightEntry != null){
-            right_type = RightEntry.getValue();
-        }
-
-        if(!left_type.equals(right_type)){
-            throw new UnsupportedOperationException("vous additionner des expr de différents type");
-        }
-        if (left_type.equals(new PrimitiveType(Type.Base.INT))) {
-
-            return new PrimitiveType(Type.Base.INT);
-        } else {
-            throw new UnsupportedOperationException("L'addition est uniquement supportée pour des types INT.");
-        }
-
+        constraints.require(PrimitiveType.INT, visit(ctx.expr(0)), ctx.expr(0), "L'addition est uniquement supportée pour des types INT");
+        constraints.require(PrimitiveType.INT, visit(ctx.expr(1)), ctx.expr(1), "L'addition est uniquement supportée pour des types INT");
+        return PrimitiveType.INT;
     }
 
     /**
@@ -873,9 +530,9 @@ public class TyperVisitor extends AbstractParseTreeVisitor<Type> implements gram
         // Retourne le type correspondant
         switch (baseType) {
             case "int":
-                return new PrimitiveType(Type.Base.INT);
+                return PrimitiveType.INT;
             case "bool":
-                return new PrimitiveType(Type.Base.BOOL);
+                return PrimitiveType.BOOL;
             case "auto":
                 return new UnknownType();
             default:
@@ -890,58 +547,30 @@ public class TyperVisitor extends AbstractParseTreeVisitor<Type> implements gram
      */
     @Override
     public Type visitTab_type(grammarTCLParser.Tab_typeContext ctx) {
-
-        String left_string = ctx.type().getText();
-
-        Type tab_type = visit(ctx.type());
-        Type Array_type = new ArrayType(tab_type);
-        return Array_type;
+        return ArrayType.of(visit(ctx.type()));
     }
 
     /**
      * Visite une déclaration de variable (type + nom). Si une initialisation
-     * est présente, on appelle visitAssignment pour gérer l'affectation.
+     * est présente, son type est contraint au type déclaré.
      */
     @Override
     public Type visitDeclaration(grammarTCLParser.DeclarationContext ctx) {
         String variableName = ctx.VAR().getText();
-        UnknownType variable = new UnknownType(ctx.VAR());
-
-
-        // Récupère le scope actuel (le sommet de la pile)
-        Map<UnknownType, Type> currentScope = typeScopes.peek();
 
         // Vérifie si une variable avec le même nom existe déjà dans le scope courant
-        if (VarExistsInCurrentScope(variableName, currentScope)) {
-            throw new IllegalArgumentException("Variable déjà déclarée dans ce bloc : " + variableName);
+        if (VarExistsInCurrentScope(variableName)) {
+            throw sourceError(new IllegalArgumentException("Variable déjà déclarée dans ce bloc : " + variableName));
         }
 
         // Ajout de la déclaration au scope courant
         Type declaredType = visit(ctx.type());
-        addVariableToScope(variable, declaredType, currentScope);
-        // Si une initialisation est présente, visite l'expression assignée
-        if (ctx.expr() != null) {
+        typedTree.bind(ctx, addVariableToScope(new UnknownType(ctx.VAR()), declaredType));
 
-            //Type expressionType = visit(ctx.expr());
-
-
-            grammarTCLParser.AssignmentContext assignmentContext = new grammarTCLParser.AssignmentContext(ctx);
-            assignmentContext.children = new ArrayList<>(); // Initialise manuellement les enfants
-            assignmentContext.addChild(ctx.VAR());
-            assignmentContext.addChild(ctx.ASSIGN());
-            assignmentContext.addChild(ctx.expr());
-
-            // Appeler visitAssignment pour gérer l'initialisation
-            Type expressionType = visitAssignment(assignmentContext);
-
-
-            // Vérifie la compatibilité des types entre la déclaration et l'expression assignée
-            if (!declaredType.equals(expressionType)) {
-                throw new IllegalArgumentException("Type mismatch in declaration: " + declaredType + " != " + expressionType);
-            }
+        // Si une initialisation est présente, son type doit être le type déclaré
+        if (ctx.expr() != null) {
+            constraints.require(declaredType, visit(ctx.expr()), ctx, "Type mismatch in declaration");
         }
-        // Affiche l'état actuel de la pile des scopes
-
         return declaredType;
     }
 
@@ -953,55 +582,41 @@ public class TyperVisitor extends AbstractParseTreeVisitor<Type> implements gram
 
         String variableName = ctx.VAR().getText();
 
-        if(existsInAllScopes(variableName)==null){
-            throw new UnsupportedOperationException("Variable '" + variableName + "' has not been declared.");
+        SymbolTable.Symbol foundEntry = existsInAllScopes(variableName);
+        if(foundEntry==null){
+            throw sourceError(new UnsupportedOperationException("Variable '" + variableName + "' has not been declared."));
         };
+        typedTree.bind(ctx, foundEntry);
         return null;
     }
 
     /**
-     * Gère l'affectation d'une variable (membre gauche) avec une expression (membre droit).
-     * Vérifie la cohérence des types, puis propage l'unification si nécessaire.
+     * Gère l'affectation d'une variable (membre gauche), éventuellement indexée,
+     * avec une expression (membre droit) : le type de l'expression est contraint
+     * au type de la case affectée.
      */
     @Override
     public Type visitAssignment(grammarTCLParser.AssignmentContext ctx) {
 
-
         String variableName = ctx.VAR().getText();
-        Map.Entry<UnknownType, Type> foundEntry = existsInAllScopes(variableName);
+        SymbolTable.Symbol foundEntry = existsInAllScopes(variableName);
         if (foundEntry == null) {
-            throw new IllegalArgumentException("Variable non déclarée : " + variableName);
-        }
-        UnknownType declaredKey = foundEntry.getKey();
-        Type declaredType = foundEntry.getValue();
-
-        grammarTCLParser.ExprContext rightExpr = ctx.expr(0);
-        Type rightType = visit(rightExpr);
-
-        // Vérification si le type droit est un UnknownType et unification correcte
-        if (declaredType instanceof UnknownType && rightType instanceof PrimitiveType) {
-
-            propagateType(declaredKey, rightType);
-            declaredType = rightType;
-        } else if (declaredType instanceof PrimitiveType && rightType instanceof UnknownType) {
-
-            propagateType((UnknownType) rightType, declaredType);
-            rightType = declaredType;
+            throw sourceError(new IllegalArgumentException("Variable non déclarée : " + variableName));
         }
+        typedTree.bind(ctx, foundEntry);
+        Type targetType = foundEntry.getValue();
 
-        if (!(declaredType instanceof UnknownType) && !(rightType instanceof UnknownType)) {
-            if (!declaredType.equals(rightType)) {
-                throw new IllegalArgumentException(
-                        "Type mismatch: " + declaredType + " != " + rightType
-                );
-            }
+        // Chaque indice descend d'un niveau dans le tableau ; la dernière expression est la valeur
+        List<grammarTCLParser.ExprContext> exprs = ctx.expr();
+        for (int i = 0; i < exprs.size() - 1; i++) {
+            constraints.require(PrimitiveType.INT, visit(exprs.get(i)), exprs.get(i), "L'indice du tableau n'est pas un entier");
+            Type elementType = new UnknownType();
+            constraints.require(ArrayType.of(elementType), targetType, ctx, "La variable indexée n'est pas un tableau");
+            targetType = elementType;
         }
+        constraints.require(targetType, visit(exprs.get(exprs.size() - 1)), ctx, "Type mismatch");
 
-        // Lien entre deux `UnknownType`
-        linkUnknownTypes(declaredKey, declaredType, rightExpr.getText(), rightType);
-
-
-        return declaredType;
+        return targetType;
     }
 
     /**
@@ -1012,8 +627,8 @@ public class TyperVisitor extends AbstractParseTreeVisitor<Type> implements gram
     public Type visitBlock(grammarTCLParser.BlockContext ctx) {
 
 
-        // Ajouter un nouveau scope à la pile
-        typeScopes.push(new HashMap<>());
+        // Ouvrir un nouveau scope
+        symbols.push();
 
 
         try {
@@ -1023,9 +638,11 @@ public class TyperVisitor extends AbstractParseTreeVisitor<Type> implements gram
                 visit(instr);
             }
         } finally {
-            // Archiver le scope courant avant de le supprimer
-            Map<UnknownType, Type> exitingScope = typeScopes.pop();
-            archivedScopes.push(exitingScope);
+            // Fermer le scope courant, en l'archivant si demandé
+            SymbolTable.Scope exitingScope = symbols.pop();
+            if (archiveScopes) {
+                archivedScopes.add(exitingScope);
+            }
 
 
         }
@@ -1034,260 +651,510 @@ public class TyperVisitor extends AbstractParseTreeVisitor<Type> implements gram
     }
 
     /**
-     * Visite un if : vérifie que la condition est un bool,
+     * Visite un if : contraint la condition à être un bool,
      * visite ensuite le bloc "then" et éventuellement le bloc "else".
      */
     @Override
     public Type visitIf(grammarTCLParser.IfContext ctx) { // on peut inférer que le auto est un bool
-
-
-        // Visite et vérifie le type de la condition
-
-        String condition_name = ctx.expr().getText();
-        Type conditionType = visit(ctx.expr());
-        if (conditionType instanceof UnknownType) {
-            unifyToBool(condition_name, conditionType);
-        }
-        Map.Entry<UnknownType, Type> Condition_Entry = existsInAllScopes(condition_name);
-        if(Condition_Entry != null){
-            conditionType = Condition_Entry.getValue();
-        }
-        // La condition doit être de type BOOL
-        if (!conditionType.equals(new PrimitiveType(Type.Base.BOOL))) {
-            throw new IllegalArgumentException("La condition de l'IF doit être de type BOOL. Trouvé : " + conditionType);
-        }
-
-
-
-        // Visite le bloc d'instructions du IF
+        constraints.require(PrimitiveType.BOOL, visit(ctx.expr()), ctx.expr(), "La condition de l'IF doit être de type BOOL");
 
         visit(ctx.instr(0)); // Premier bloc d'instructions après la condition
 
         // Visite le bloc ELSE s'il existe
         if (ctx.ELSE() != null) {
-
             visit(ctx.instr(1)); // Deuxième bloc d'instructions (bloc ELSE)
         }
-
-
         return null; // Le IF ne retourne pas de type particulier
     }
 
     /**
-     * Visite un while : vérifie que la condition est de type bool,
+     * Visite un while : contraint la condition à être de type bool,
      * puis visite l'instruction à l'intérieur de la boucle.
      */
     @Override
     public Type visitWhile(grammarTCLParser.WhileContext ctx) { //semblable au VisitIf
-
-        Type conditionType = visit(ctx.expr());
-        // La condition doit être de type BOOL
-        if (!conditionType.equals(new PrimitiveType(Type.Base.BOOL))) {// il faut vérifier que l'expr est un bool
-            throw new IllegalArgumentException("La condition du while doit être de type BOOL. Trouvé : " + conditionType);
-        }
+        constraints.require(PrimitiveType.BOOL, visit(ctx.expr()), ctx.expr(), "La condition du while doit être de type BOOL");
         visit(ctx.instr());// on visite l'instruction pour typer à l'intérieur de l'instruction
         return null; // le while ne retourne rien
     }
 
     /**
-     * Visite un for : vérifie la condition (doit être bool),
+     * Visite un for : contraint la condition à être un bool,
      * et visite les 3 instructions (initialisation, incrémentation, et le corps).
      */
     @Override
     public Type visitFor(grammarTCLParser.ForContext ctx) { //selon la grammaire : 3 instr et 1 expr, on va ts les visiter et faire comme dans visitWhile et VisitIf
-
         visit(ctx.instr(0));
-        String condition_name = ctx.expr().getText(); //comme dans l'inférence de la condition avec le if
-        Type conditionType = visit(ctx.expr());
-        if (conditionType instanceof UnknownType) {
-            unifyToBool(condition_name, conditionType);
-        }
-        Map.Entry<UnknownType, Type> Condition_Entry = existsInAllScopes(condition_name);
-        if(Condition_Entry != null){
-            conditionType = Condition_Entry.getValue();
-        }
-        // La condition doit être de type BOOL
-        if (!conditionType.equals(new PrimitiveType(Type.Base.BOOL))) {// il faut vérifier que l'expr est un bool
-            throw new IllegalArgumentException("La condition du FOR doit être de type BOOL. Trouvé : " + conditionType);
-        }
+        constraints.require(PrimitiveType.BOOL, visit(ctx.expr()), ctx.expr(), "La condition du FOR doit être de type BOOL");
         visit(ctx.instr(1));
         visit(ctx.instr(2));
         return null; // comme visitIf et VisitWhile
     }
 
     /**
-     * Visite un return : capture le type de l'expression retournée.
+     * Visite un return placé dans une instruction : le type de l'expression
+     * retournée est contraint au type de retour de la fonction.
      *
      * @return le type de l'expression retournée
      */
     @Override
     public Type visitReturn(grammarTCLParser.ReturnContext ctx) {
-        return visit(ctx.expr()); // Retourne le type
+        Type returnType = visit(ctx.expr());
+        constraints.require(currentReturnType, returnType, ctx, "Type de retour incompatible");
+        return returnType;
     }
 
     /**
      * Visite le corps d'une fonction (core_fct),
-     * c'est-à-dire les instructions suivies éventuellement d'un return.
+     * c'est-à-dire les instructions suivies du return final.
      *
-     * @return le type de retour si un return est présent, sinon null
+     * @return le type de l'expression du return final
      */
     @Override
     public Type visitCore_fct(grammarTCLParser.Core_fctContext ctx) {
 
-
         // Parcourt et visite toutes les instructions
         for (var instr : ctx.instr()) {
-
             visit(instr); // Visite chaque instruction (y compris les déclarations)
         }
 
-        // Visite l'expression de retour si elle existe
-        if (ctx.RETURN() != null) {
-
-
-            // Récupère le type de retour
-            grammarTCLParser.ExprContext test = ctx.expr();
-            Type returnType = visit(ctx.expr());
+        // Récupère le type de retour
+        Type returnType = visit(ctx.expr());
+        constraints.require(currentReturnType, returnType, ctx.expr(), "Type de retour incompatible");
 
-            // Ajoute le typeScope actuel à l'archive
-            if (!typeScopes.isEmpty()) {
-                Map<UnknownType, Type> currentScope = new HashMap<>(typeScopes.peek());
-                archivedScopes.push(currentScope);
-            }
-
-            return returnType; // Retourne le type de retour
+        // Ajoute une photographie du scope actuel à l'archive
+        if (archiveScopes && symbols.depth() > 0) {
+            archivedScopes.add(symbols.currentScope());
         }
 
-        return null; // Retourne null si aucune expression RETURN n'est présente
+        return returnType; // Retourne le type de retour
     }
 
     /**
      * Visite la déclaration d'une fonction,
      * y compris la création d'un scope pour ses paramètres et son corps.
+     * Les contraintes émises par le corps sont résolues avant de passer à la suite.
      *
      * @return le FunctionType correspondant à la fonction.
      */
     @Override
     public Type visitDecl_fct(grammarTCLParser.Decl_fctContext ctx) {
 
+        // Signature déjà calculée pour ce code et ces fonctions appelées : le corps n'est pas re-typé
+        String cacheKey = signatureKey(ctx);
+        if (cacheKey != null) {
+            FunctionType cached = cache.loadSignature(cacheKey);
+            if (cached != null) {
+                declareFunction(ctx, cached);
+                return cached;
+            }
+        }
 
-        // Récupération du type de retour et du nom de la fonction
-        Type returnType = visit(ctx.type(0));
-        String functionName = ctx.VAR(0).getText();
+        // Signature déclarée, ajoutée à la table des types globale avant le corps (appels récursifs)
+        FunctionType functionType = declaredSignature(ctx);
+        UnknownType functionKey = declareFunction(ctx, functionType);
+        typeFunctionBody(ctx, functionKey, functionType, cacheKey);
+        return functionType;
+    }
+
+    /**
+     * Clé de la signature d'une fonction dans le cache, d'après son code et les
+     * signatures des fonctions qu'elle appelle.
+     *
+     * @param ctx déclaration de la fonction
+     * @return la clé, ou null si le cache est désactivé
+     */
+    private String signatureKey(grammarTCLParser.Decl_fctContext ctx) {
+        if (cache == null) {
+            return null;
+        }
+        StringBuilder callees = new StringBuilder();
+        appendCalleeSignatures(ctx.core_fct(), callees);
+        return cache.signatureKey(ctx, callees.toString());
+    }
 
+    /**
+     * Signature telle que déclarée : les auto y sont des variables de type.
+     *
+     * @param ctx déclaration de la fonction
+     * @return la signature déclarée
+     */
+    private FunctionType declaredSignature(grammarTCLParser.Decl_fctContext ctx) {
+        // Récupération du type de retour
+        Type returnType = visit(ctx.type(0));
 
         // Analyse des paramètres
         ArrayList<Type> parametersType = new ArrayList<>();
-        if (ctx.type().size() > 1) {
-            for (int i = 1; i < ctx.type().size(); i++) {
-                parametersType.add(visit(ctx.type(i)));
-            }
+        for (int i = 1; i < ctx.type().size(); i++) {
+            parametersType.add(visit(ctx.type(i)));
         }
+        return new FunctionType(returnType, parametersType);
+    }
 
-        // Création de l'objet représentant la fonction
-        FunctionType functionType = new FunctionType(returnType, parametersType);
-
+    /**
+     * Déclare une fonction dans le scope courant.
+     *
+     * @param ctx déclaration de la fonction
+     * @param functionType sa signature
+     * @return la clé de sa déclaration
+     */
+    private UnknownType declareFunction(grammarTCLParser.Decl_fctContext ctx, FunctionType functionType) {
         // Vérifie si la fonction existe déjà dans le scope actuel
-        Map<UnknownType, Type> currentScope = typeScopes.peek();
-        if (FunctionExistsInCurrentScope(functionName, currentScope)) {
-            throw new UnsupportedOperationException("La fonction " + functionName + " est déjà déclarée.");
+        String functionName = ctx.VAR(0).getText();
+        if (FunctionExistsInCurrentScope(functionName)) {
+            throw sourceError(new UnsupportedOperationException("La fonction " + functionName + " est déjà déclarée."));
         }
 
-        // Ajoute la fonction à la table des types globale
         UnknownType functionKey = new UnknownType(ctx.VAR(0));
-        addVariableToScope(functionKey, functionType, currentScope);
+        typedTree.bind(ctx.VAR(0), addVariableToScope(functionKey, functionType));
+        return functionKey;
+    }
+
+    /**
+     * Type le corps d'une fonction déjà déclarée, résout ses contraintes
+     * et met à jour sa déclaration avec la signature résolue.
+     *
+     * @param ctx déclaration de la fonction
+     * @param functionKey clé de sa déclaration
+     * @param functionType sa signature déclarée
+     * @param cacheKey clé de la signature dans le cache (null si désactivé)
+     * @return la signature résolue
+     */
+    private FunctionType typeFunctionBody(grammarTCLParser.Decl_fctContext ctx, UnknownType functionKey,
+                                          FunctionType functionType, String cacheKey) {
 
         // **Vérifier si un scope local existe déjà**
-        boolean newScopeCreated = typeScopes.size() == 1; // On est dans le scope global
+        boolean newScopeCreated = symbols.depth() == 1; // On est dans le scope global
 
         if (newScopeCreated) {
-            typeScopes.push(new HashMap<>());
-
+            symbols.push();
         }
 
-        // Déclaration des paramètres dans le scope local
+        // Déclaration des paramètres dans le scope local, avec les types de la signature
         for (int i = 1; i < ctx.type().size(); i++) {
-            grammarTCLParser.InstrContext instrCtx = new grammarTCLParser.InstrContext();
-            grammarTCLParser.DeclarationContext declarationCtx = new grammarTCLParser.DeclarationContext(instrCtx);
-            declarationCtx.children = new ArrayList<>();
-            declarationCtx.addChild(ctx.type(i));
-            declarationCtx.addChild(ctx.VAR(i));
+            String parameterName = ctx.VAR(i).getText();
+            if (VarExistsInCurrentScope(parameterName)) {
+                throw sourceError(new IllegalArgumentException("Variable déjà déclarée dans ce bloc : " + parameterName));
+            }
+            typedTree.bind(ctx.VAR(i), addVariableToScope(new UnknownType(ctx.VAR(i)), functionType.getArgsType(i - 1)));
+        }
 
-            visitDeclaration(declarationCtx);
+        // Visite du corps de la fonction puis résolution de ses contraintes
+        Type enclosingReturnType = currentReturnType;
+        FunctionType enclosingFunction = currentFunction;
+        currentReturnType = functionType.getReturnType();
+        currentFunction = functionType;
+        try {
+            visit(ctx.core_fct());
+        } finally {
+            currentReturnType = enclosingReturnType;
+            currentFunction = enclosingFunction;
         }
+        constraints.solve();
 
-        // Visite du corps de la fonction
-        Type coreReturnType = visit(ctx.core_fct());
+        // Mise à jour de la déclaration de la fonction avec sa signature résolue
+        FunctionType resolvedType = (FunctionType) constraints.resolve(functionType);
+        symbols.update(functionKey, resolvedType);
+        if (cacheKey != null) {
+            cache.storeSignature(cacheKey, resolvedType);
+        }
 
-        // Si le type de retour est `auto`, il doit être remplacé par le type réellement retourné
-        if (returnType instanceof UnknownType) {
+        // Archivage du scope seulement si créé
+        if (newScopeCreated) {
+            symbols.pop();
+        }
 
+        return resolvedType;
+    }
 
-            // Unification avec le type réellement retourné
-            Map<UnknownType, Type> unification = ((UnknownType) returnType).unify(coreReturnType);
-            for (Map.Entry<UnknownType, Type> entry : unification.entrySet()) {
-                propagateType(entry.getKey(), entry.getValue());
+    /**
+     * Typage du corps d'une fonction, par son propre visiteur, dans le mode parallèle.
+     * <p>
+     * La table des symboles de la tâche ne contient que la fonction elle-même et les fonctions
+     * déclarées avant elle que son corps nomme : une fonction dont la signature contient des auto
+     * y figure avec sa signature résolue, attendue auparavant, les autres avec leur signature
+     * déclarée, que le typage de leur corps ne peut pas changer. Une erreur est conservée telle
+     * quelle pour être relancée dans l'ordre des déclarations.
+     */
+    private final class FunctionTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int index;
+        private final grammarTCLParser.Decl_fctContext ctx;
+        private final FunctionTask[] tasks;
+        private final FunctionType[] signatures;
+        private final UnknownType[] keys;
+        private final Map<String, Integer> indices;
+        private final TyperVisitor typer = new TyperVisitor();
+        private FunctionType result = null;
+        private RuntimeException failure = null;
+
+        private FunctionTask(int index, grammarTCLParser.Decl_fctContext ctx, FunctionTask[] tasks,
+                             FunctionType[] signatures, UnknownType[] keys, Map<String, Integer> indices) {
+            this.index = index;
+            this.ctx = ctx;
+            this.tasks = tasks;
+            this.signatures = signatures;
+            this.keys = keys;
+            this.indices = indices;
+            typer.cache = cache;
+            typer.archiveScopes = archiveScopes;
+        }
+
+        @Override
+        protected void compute() {
+            long[] running = workers != null && Thread.currentThread() != typingThread ? workers.start() : null;
+            try {
+                // Fonctions visibles nommées par le corps, dans l'ordre des déclarations
+                Set<String> names = new HashSet<>();
+                collectNames(ctx.core_fct(), names);
+                TreeSet<Integer> visible = new TreeSet<>();
+                for (String name : names) {
+                    Integer declared = indices.get(name);
+                    if (declared != null && declared < index) {
+                        visible.add(declared);
+                    }
+                }
+                for (int j : visible) {
+                    FunctionType signature = signatures[j];
+                    if (containsVariable(signature)) {
+                        // L'attente n'est pas comptée : une tâche exécutée entre-temps se mesure elle-même
+                        if (running != null) workers.stop(running);
+                        tasks[j].join();
+                        if (running != null) running = workers.start();
+                        if (tasks[j].result == null) {
+                            return; // L'erreur de la fonction appelée est relancée avant celle-ci
+                        }
+                        signature = tasks[j].result;
+                    }
+                    typer.symbols.declare(keys[j], signature);
+                }
+                typer.symbols.declare(keys[index], signatures[index]);
+
+                String cacheKey = typer.signatureKey(ctx);
+                FunctionType cached = cacheKey == null ? null : cache.loadSignature(cacheKey);
+                result = cached != null ? cached
+                        : typer.typeFunctionBody(ctx, keys[index], signatures[index], cacheKey);
+            } catch (RuntimeException e) {
+                failure = e;
+            } finally {
+                if (running != null) workers.stop(running);
             }
+        }
+    }
 
-            // Mise à jour du type de retour
-            returnType = find((UnknownType) returnType);
+    /**
+     * Type les fonctions en ne reprenant que celles qui ont pu changer depuis le typage précédent :
+     * <ul>
+     * <li>une fonction nouvelle ou dont le texte a changé est re-typée ;</li>
+     * <li>si sa signature résolue n'est plus la même, ses appelantes (d'après le graphe de
+     * dépendances du typage précédent) sont re-typées à leur tour ;</li>
+     * <li>une fonction dont une appelée n'est plus déclarée avant elle est re-typée,
+     * pour signaler l'erreur.</li>
+     * </ul>
+     * Les autres fonctions sont déclarées avec leur signature précédente, sans parcourir leur corps :
+     * l'arbre typé n'a alors pas d'entrée pour leurs nœuds et la génération de code retrouve leurs
+     * variables par leur nom. Les appelées précédant toujours les appelantes, un seul parcours
+     * dans l'ordre des déclarations suffit.
+     *
+     * @param functions déclarations de fonctions, dans l'ordre du source
+     */
+    private void typeFunctionsIncrementally(List<grammarTCLParser.Decl_fctContext> functions) {
+        TypingHistory previous = history;
+        TypingHistory next = new TypingHistory();
+        Set<String> invalidated = new HashSet<>();
+        int retyped = 0;
+
+        for (grammarTCLParser.Decl_fctContext function : functions) {
+            String name = function.VAR(0).getText();
+            String source = sourceText(function);
+            TypingHistory.Entry entry = previous.get(name);
+
+            if (entry != null && entry.getSource().equals(source) && !invalidated.contains(name)
+                    && calleesDeclared(entry)) {
+                declareFunction(function, entry.getSignature());
+                next.record(name, entry);
+                continue;
+            }
 
+            visit(function);
+            retyped++;
+            FunctionType signature = findFunctionType(name);
+            Set<String> callees = new HashSet<>();
+            collectCallees(function.core_fct(), callees);
+            next.record(name, new TypingHistory.Entry(source, signature, callees));
+            if (entry != null && !TypingHistory.sameSignature(entry.getSignature(), signature)) {
+                invalidated.addAll(previous.getCallers(name));
+            }
         }
 
-        // FORCER L'UNIFICATION DU TYPE DE RETOUR
-        if (returnType instanceof UnknownType && coreReturnType instanceof PrimitiveType) {
+        history = next;
+        if (Trace.TYPER.isEnabled()) {
+            Trace.TYPER.log("Typage incrémental : " + retyped + " fonction(s) re-typée(s) sur " + functions.size());
+        }
+    }
 
-            propagateType((UnknownType) returnType, coreReturnType);
-            returnType = coreReturnType;
+    /**
+     * Teste si toutes les fonctions appelées lors du typage précédent sont déclarées.
+     *
+     * @param entry résultat du typage précédent d'une fonction
+     * @return boolean
+     */
+    private boolean calleesDeclared(TypingHistory.Entry entry) {
+        for (String callee : entry.getCallees()) {
+            if (findFunctionType(callee) == null) {
+                return false;
+            }
         }
+        return true;
+    }
 
-        // Si le type de retour est un `UnknownType`, on essaie de l'unifier avec le type retourné
-        if (returnType instanceof UnknownType) {
+    /**
+     * Texte source d'une déclaration de fonction.
+     *
+     * @param ctx déclaration de la fonction
+     * @return son texte, espaces et commentaires compris
+     */
+    private static String sourceText(grammarTCLParser.Decl_fctContext ctx) {
+        return ctx.getStart().getInputStream().getText(
+                Interval.of(ctx.getStart().getStartIndex(), ctx.getStop().getStopIndex()));
+    }
 
-            union((UnknownType) returnType, (UnknownType) coreReturnType);
-            returnType = find((UnknownType) returnType); // Mise à jour avec la racine unifiée
-            coreReturnType = find((UnknownType) coreReturnType);
+    /**
+     * Collecte les noms des fonctions appelées dans un sous-arbre.
+     *
+     * @param tree sous-arbre à parcourir
+     * @param callees noms trouvés
+     */
+    private static void collectCallees(ParseTree tree, Set<String> callees) {
+        if (tree instanceof grammarTCLParser.CallContext) {
+            callees.add(((grammarTCLParser.CallContext) tree).VAR().getText());
+        }
+        for (int i = 0; i < tree.getChildCount(); i++) {
+            collectCallees(tree.getChild(i), callees);
         }
+    }
 
-        // Vérification après unification
-        if (!coreReturnType.equals(returnType)) {
-            throw new IllegalArgumentException(
-                    "Type de retour incompatible pour la fonction '" + functionName +
-                            "'. Attendu : " + returnType + ", Trouvé : " + coreReturnType
-            );
+    /**
+     * Collecte les noms (variables et fonctions) cités dans un sous-arbre.
+     *
+     * @param tree sous-arbre à parcourir
+     * @param names noms trouvés
+     */
+    private static void collectNames(ParseTree tree, Set<String> names) {
+        if (tree instanceof TerminalNode) {
+            if (((TerminalNode) tree).getSymbol().getType() == grammarTCLParser.VAR) {
+                names.add(tree.getText());
+            }
+            return;
+        }
+        for (int i = 0; i < tree.getChildCount(); i++) {
+            collectNames(tree.getChild(i), names);
         }
+    }
 
-        // Mise à jour de la déclaration de la fonction avec le type correct
-        currentScope.put(functionKey, new FunctionType(returnType, parametersType));
+    /**
+     * Teste si un type contient une variable de type (un auto).
+     *
+     * @param type type à parcourir
+     * @return boolean
+     */
+    private static boolean containsVariable(Type type) {
+        if (type instanceof UnknownType) {
+            return true;
+        }
+        if (type instanceof ArrayType) {
+            return containsVariable(((ArrayType) type).getTabType());
+        }
+        if (type instanceof FunctionType) {
+            FunctionType function = (FunctionType) type;
+            for (int i = 0; i < function.getNbArgs(); i++) {
+                if (containsVariable(function.getArgsType(i))) {
+                    return true;
+                }
+            }
+            return containsVariable(function.getReturnType());
+        }
+        return false;
+    }
 
-        // Archivage du scope seulement si créé
-        if (newScopeCreated) {
-            Map<UnknownType, Type> localScope = typeScopes.pop();
+    /**
+     * Type les fonctions en parallèle : les signatures sont d'abord toutes déclarées, puis
+     * chaque corps est typé par une tâche {@link ForkJoinTask} avec ses propres contraintes.
+     * Les résultats (signatures résolues, types des nœuds, scopes archivés) sont repris dans
+     * l'ordre des déclarations, et la première erreur dans cet ordre est relancée : le
+     * résultat est celui du typage séquentiel, quel que soit l'ordre d'exécution des tâches.
+     *
+     * @param functions déclarations de fonctions, dans l'ordre du source
+     */
+    private void typeFunctionsInParallel(List<grammarTCLParser.Decl_fctContext> functions) {
+        int count = functions.size();
+        FunctionType[] signatures = new FunctionType[count];
+        UnknownType[] keys = new UnknownType[count];
+        Map<String, Integer> indices = new HashMap<>();
+
+        // Déclaration des signatures ; une fonction déjà déclarée arrête la déclaration
+        RuntimeException declarationFailure = null;
+        int declared = 0;
+        try {
+            for (; declared < count; declared++) {
+                grammarTCLParser.Decl_fctContext function = functions.get(declared);
+                signatures[declared] = declaredSignature(function);
+                keys[declared] = declareFunction(function, signatures[declared]);
+                indices.put(keys[declared].getVarName(), declared);
+            }
+        } catch (RuntimeException e) {
+            declarationFailure = e;
+        }
 
+        // Typage des corps : une tâche par fonction, toutes lancées avant d'attendre la première
+        typingThread = Thread.currentThread();
+        FunctionTask[] tasks = new FunctionTask[declared];
+        for (int i = 0; i < declared; i++) {
+            tasks[i] = new FunctionTask(i, functions.get(i), tasks, signatures, keys, indices);
+        }
+        for (FunctionTask task : tasks) {
+            task.fork();
         }
 
-        return functionType;
+        // Reprise des résultats dans l'ordre des déclarations
+        for (FunctionTask task : tasks) {
+            task.quietlyJoin();
+            if (task.failure != null) {
+                throw task.failure;
+            }
+            constraints.absorb(task.typer.constraints);
+            typedTree.absorb(task.typer.typedTree);
+            archivedScopes.addAll(task.typer.archivedScopes);
+            symbols.update(keys[task.index], task.result);
+        }
+        if (declarationFailure != null) {
+            throw declarationFailure;
+        }
     }
 
     /**
      * Visite le noeud principal (main) : parcourt les fonctions déclarées,
-     * puis le corps principal s'il existe.
+     * puis le corps principal, dont les contraintes sont résolues à la fin.
      */
     @Override
     public Type visitMain(grammarTCLParser.MainContext ctx) {
 
-
         // Parcourt les déclarations de fonctions
-        for (var declFct : ctx.decl_fct()) {
-
-            visit(declFct);
+        if (history != null) {
+            typeFunctionsIncrementally(ctx.decl_fct());
+        } else if (parallel && ctx.decl_fct().size() > 1) {
+            typeFunctionsInParallel(ctx.decl_fct());
+        } else {
+            for (var declFct : ctx.decl_fct()) {
+                visit(declFct);
+            }
         }
 
-        // Visite le cœur de la fonction principale
-        if (ctx.core_fct() != null) {
-
-            visit(ctx.core_fct());
-        }
+        // Visite le cœur de la fonction principale, qui retourne un int
+        currentReturnType = PrimitiveType.INT;
+        visit(ctx.core_fct());
+        constraints.solve();
         return null;
     }
 }
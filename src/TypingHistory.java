@@ -0,0 +1,159 @@
+import Graph.OrientedGraph;
+import Type.ArrayType;
+import Type.FunctionType;
+import Type.Type;
+import Type.UnknownType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Résultats du typage d'un programme, par fonction, repris par la compilation suivante du même
+ * source pour ne re-typer que ce qui a pu changer (voir {@link TyperVisitor#setHistory(TypingHistory)}).
+ * <p>
+ * Pour chaque fonction sont conservés le texte de sa déclaration, sa signature résolue et les
+ * fonctions qu'elle appelle. Les appels forment un graphe de dépendances ({@link OrientedGraph},
+ * arc de la fonction appelée vers la fonction appelante) : quand la signature d'une fonction
+ * re-typée change, ses appelantes sont re-typées à leur tour, de proche en proche.
+ * <p>
+ * Un historique n'est plus modifié une fois le typage terminé : il peut être partagé entre threads.
+ */
+public class TypingHistory {
+    /**
+     * Résultat du typage d'une fonction.
+     */
+    public static final class Entry {
+        private final String source;
+        private final FunctionType signature;
+        private final Set<String> callees;
+
+        /**
+         * Constructeur
+         * @param source texte de la déclaration de la fonction
+         * @param signature signature résolue
+         * @param callees noms des fonctions appelées par son corps
+         */
+        public Entry(String source, FunctionType signature, Set<String> callees) {
+            this.source = source;
+            this.signature = signature;
+            this.callees = callees;
+        }
+
+        /**
+         * Getter du texte de la déclaration
+         * @return texte source de la fonction
+         */
+        public String getSource() {
+            return source;
+        }
+
+        /**
+         * Getter de la signature résolue
+         * @return signature de la fonction
+         */
+        public FunctionType getSignature() {
+            return signature;
+        }
+
+        /**
+         * Getter des fonctions appelées
+         * @return noms des fonctions appelées
+         */
+        public Set<String> getCallees() {
+            return callees;
+        }
+    }
+
+    private final Map<String, Entry> functions = new HashMap<>();
+    private final OrientedGraph<String> dependents = new OrientedGraph<>();
+
+    /**
+     * Enregistre le résultat du typage d'une fonction et ses arcs de dépendance.
+     * @param name nom de la fonction
+     * @param entry résultat de son typage
+     */
+    public void record(String name, Entry entry) {
+        functions.put(name, entry);
+        dependents.addVertex(name);
+        for (String callee : entry.getCallees()) {
+            dependents.addEdge(callee, name);
+        }
+    }
+
+    /**
+     * Getter du résultat du typage d'une fonction
+     * @param name nom de la fonction
+     * @return son résultat, ou null si elle n'a pas été typée
+     */
+    public Entry get(String name) {
+        return functions.get(name);
+    }
+
+    /**
+     * Getter des fonctions qui appellent une fonction
+     * @param name nom de la fonction appelée
+     * @return noms des fonctions appelantes
+     */
+    public List<String> getCallers(String name) {
+        ArrayList<String> callers = dependents.getOutNeighbors(name);
+        return callers == null ? Collections.emptyList() : callers;
+    }
+
+    /**
+     * Getter du nombre de fonctions typées
+     * @return nombre de fonctions
+     */
+    public int size() {
+        return functions.size();
+    }
+
+    /**
+     * Teste si deux signatures sont les mêmes au nommage près de leurs variables de type :
+     * une signature re-typée sans changement garde ses appelantes valides, même si ses
+     * auto libres ont reçu de nouvelles variables.
+     * @param first première signature
+     * @param second seconde signature
+     * @return boolean
+     */
+    public static boolean sameSignature(FunctionType first, FunctionType second) {
+        return equivalent(first, second, new HashMap<>(), new HashMap<>());
+    }
+
+    /**
+     * Compare deux types en associant une à une leurs variables.
+     * @param first premier type
+     * @param second second type
+     * @param forward variable du second type associée à chaque variable du premier
+     * @param backward variable du premier type associée à chaque variable du second
+     * @return boolean
+     */
+    private static boolean equivalent(Type first, Type second, Map<UnknownType, UnknownType> forward,
+                                      Map<UnknownType, UnknownType> backward) {
+        if (first instanceof UnknownType && second instanceof UnknownType) {
+            UnknownType mapped = forward.putIfAbsent((UnknownType) first, (UnknownType) second);
+            UnknownType reverse = backward.putIfAbsent((UnknownType) second, (UnknownType) first);
+            return (mapped == null || mapped.equals(second)) && (reverse == null || reverse.equals(first));
+        }
+        if (first instanceof ArrayType && second instanceof ArrayType) {
+            return equivalent(((ArrayType) first).getTabType(), ((ArrayType) second).getTabType(), forward, backward);
+        }
+        if (first instanceof FunctionType && second instanceof FunctionType) {
+            FunctionType firstFunction = (FunctionType) first;
+            FunctionType secondFunction = (FunctionType) second;
+            if (firstFunction.getNbArgs() != secondFunction.getNbArgs()) {
+                return false;
+            }
+            for (int i = 0; i < firstFunction.getNbArgs(); i++) {
+                if (!equivalent(firstFunction.getArgsType(i), secondFunction.getArgsType(i), forward, backward)) {
+                    return false;
+                }
+            }
+            return equivalent(firstFunction.getReturnType(), secondFunction.getReturnType(), forward, backward);
+        }
+        return !(first instanceof UnknownType) && !(second instanceof UnknownType) && first.equals(second);
+    }
+}
@@ -0,0 +1,448 @@
+package Workload;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Générateur de programmes TCL synthétiques, pour les benchmarks et les tests de montée en charge.
+ * <p>
+ * Un même germe produit toujours le même programme : les corpus générés sont reproductibles
+ * d'une machine et d'une version à l'autre. La forme des programmes est réglable :
+ * nombre de fonctions, profondeur d'imbrication des if/while/for, variables par scope,
+ * longueur des expressions, proportion de déclarations auto et nombre d'appels par fonction.
+ * <p>
+ * Les programmes n'utilisent que ce que le typage et la génération de code acceptent
+ * (entiers, comparaisons, appels, blocs imbriqués) : ni tableaux ni print, pas d'affectation
+ * des paramètres, et seules des variables déclarées int sont passées en argument.
+ * Ils sont faits pour être compilés, pas exécutés : les boucles while ne terminent pas forcément.
+ */
+public class Generator {
+    private final Random random;
+    private int functions = 10;
+    private int depth = 3;
+    private int variablesPerScope = 3;
+    private int statementsPerBlock = 4;
+    private int expressionLength = 3;
+    private int autoDensity = 20;
+    private int fanOut = 2;
+
+    private final StringBuilder source = new StringBuilder();
+    private final List<List<String>> visible = new ArrayList<>();
+    private final List<String> parameters = new ArrayList<>();
+    private final Set<String> autoVariables = new HashSet<>();
+    private int nextVariable;
+    private int callsLeft;
+    private int callableFunctions;
+    private int[] arities;
+
+    /**
+     * Constructeur
+     * @param seed germe du générateur pseudo-aléatoire
+     */
+    public Generator(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Setter du nombre de fonctions déclarées avant le main
+     * @param functions nombre de fonctions
+     */
+    public void setFunctions(int functions) {
+        this.functions = functions;
+    }
+
+    /**
+     * Setter de la profondeur maximale d'imbrication des blocs if/while/for
+     * @param depth profondeur (0 pour des corps sans imbrication)
+     */
+    public void setDepth(int depth) {
+        this.depth = depth;
+    }
+
+    /**
+     * Setter du nombre de variables déclarées au début de chaque bloc
+     * @param variablesPerScope nombre de variables par scope
+     */
+    public void setVariablesPerScope(int variablesPerScope) {
+        this.variablesPerScope = variablesPerScope;
+    }
+
+    /**
+     * Setter du nombre d'instructions (hors déclarations) de chaque bloc
+     * @param statementsPerBlock nombre d'instructions par bloc
+     */
+    public void setStatementsPerBlock(int statementsPerBlock) {
+        this.statementsPerBlock = statementsPerBlock;
+    }
+
+    /**
+     * Setter du nombre d'opérandes des expressions
+     * @param expressionLength nombre d'opérandes (au moins 1)
+     */
+    public void setExpressionLength(int expressionLength) {
+        this.expressionLength = expressionLength;
+    }
+
+    /**
+     * Setter de la proportion de déclarations, paramètres et types de retour auto
+     * @param autoDensity pourcentage entre 0 et 100
+     */
+    public void setAutoDensity(int autoDensity) {
+        this.autoDensity = autoDensity;
+    }
+
+    /**
+     * Setter du nombre d'appels de fonctions dans le corps de chaque fonction
+     * @param fanOut nombre d'appels par fonction
+     */
+    public void setFanOut(int fanOut) {
+        this.fanOut = fanOut;
+    }
+
+    /**
+     * Génère un programme complet.
+     * @return code source TCL
+     */
+    public String generate() {
+        source.setLength(0);
+        arities = new int[functions];
+        for (int f = 0; f < functions; f++) {
+            arities[f] = 1 + random.nextInt(3);
+            callableFunctions = f; // Une fonction n'appelle que les fonctions déclarées avant elle
+            function(f);
+        }
+        callableFunctions = functions;
+        source.append("int main() ");
+        body();
+        source.append('\n');
+        return source.toString();
+    }
+
+    /**
+     * Écrit une déclaration de fonction : paramètres, puis corps.
+     * @param f numéro de la fonction
+     */
+    private void function(int f) {
+        source.append(baseType()).append(" f").append(f).append('(');
+        for (int i = 0; i < arities[f]; i++) {
+            if (i > 0) source.append(", ");
+            String name = "p" + i;
+            String type = baseType();
+            source.append(type).append(' ').append(name);
+            parameters.add(name);
+            if (type.equals("auto")) autoVariables.add(name);
+        }
+        source.append(") ");
+        body();
+        parameters.clear();
+        autoVariables.clear();
+        source.append("\n\n");
+    }
+
+    /**
+     * Écrit le corps d'une fonction : un bloc suivi du return obligatoire.
+     */
+    private void body() {
+        nextVariable = 0;
+        autoVariables.removeIf(name -> !parameters.contains(name));
+        callsLeft = fanOut;
+        source.append("{\n");
+        List<String> scope = new ArrayList<>();
+        visible.add(scope);
+        declarations(scope, 1);
+        statements(1, depth);
+        indent(1);
+        source.append("return ").append(typedExpression()).append(";\n");
+        visible.remove(visible.size() - 1);
+        source.append('}');
+    }
+
+    /**
+     * Écrit un bloc entre accolades avec son propre scope.
+     * @param level niveau d'indentation
+     * @param depthLeft profondeur d'imbrication encore autorisée
+     */
+    private void block(int level, int depthLeft) {
+        source.append("{\n");
+        List<String> scope = new ArrayList<>();
+        visible.add(scope);
+        declarations(scope, level + 1);
+        statements(level + 1, depthLeft);
+        visible.remove(visible.size() - 1);
+        indent(level);
+        source.append('}');
+    }
+
+    /**
+     * Déclare les variables d'un scope. Une variable auto reçoit sa valeur par une affectation
+     * séparée, pour que son type soit inféré.
+     * @param scope variables du scope
+     * @param level niveau d'indentation
+     */
+    private void declarations(List<String> scope, int level) {
+        for (int i = 0; i < variablesPerScope; i++) {
+            indent(level);
+            declaration(scope, level);
+            source.append('\n');
+        }
+    }
+
+    /**
+     * Déclare une variable initialisée, sans indenter la première ligne ni terminer la dernière.
+     * @param scope variables du scope
+     * @param level niveau d'indentation
+     */
+    private void declaration(List<String> scope, int level) {
+        String name = "v" + (nextVariable++);
+        String value = expression();
+        if (random.nextInt(100) < autoDensity) {
+            autoVariables.add(name);
+            source.append("auto ").append(name).append(";\n");
+            indent(level);
+            source.append(name).append(" = ").append(value).append(';');
+        } else {
+            source.append("int ").append(name).append(" = ").append(value).append(';');
+        }
+        scope.add(name);
+    }
+
+    /**
+     * Écrit les instructions d'un bloc : des affectations et, tant que la profondeur le permet,
+     * une instruction composée dont seul le premier sous-bloc est imbriqué à nouveau,
+     * pour que la taille croisse linéairement avec la profondeur.
+     * @param level niveau d'indentation
+     * @param depthLeft profondeur d'imbrication encore autorisée
+     */
+    private void statements(int level, int depthLeft) {
+        int compound = depthLeft > 0 && statementsPerBlock > 0 ? random.nextInt(statementsPerBlock) : -1;
+        for (int i = 0; i < statementsPerBlock; i++) {
+            indent(level);
+            if (!hasVariable(true)) {
+                declaration(visible.get(visible.size() - 1), level); // Rien à affecter : on déclare
+            } else if (i != compound) {
+                source.append(variable(true)).append(" = ").append(expression()).append(';');
+            } else {
+                switch (random.nextInt(3)) {
+                    case 0:
+                        source.append("if (").append(condition()).append(") ");
+                        block(level, depthLeft - 1);
+                        source.append(" else ");
+                        block(level, 0);
+                        break;
+                    case 1:
+                        source.append("while (").append(condition()).append(") ");
+                        block(level, depthLeft - 1);
+                        break;
+                    default:
+                        String counter = variable(true);
+                        source.append("for (").append(counter).append(" = 0;, ")
+                                .append(counter).append(" < ").append(1 + random.nextInt(100)).append(", ")
+                                .append(counter).append(" = ").append(counter).append(" + 1;) ");
+                        block(level, depthLeft - 1);
+                }
+            }
+            source.append('\n');
+        }
+    }
+
+    /**
+     * Construit une comparaison entre deux expressions.
+     * @return condition
+     */
+    private String condition() {
+        String[] operators = { "<", "<=", ">", ">=", "==", "!=" };
+        return typedExpression() + " " + operators[random.nextInt(operators.length)] + " " + typedExpression();
+    }
+
+    /**
+     * Construit une expression dont le type est connu sans inférence : le typage n'unifie pas
+     * une variable auto seule avec un type de retour ou l'autre membre d'une comparaison.
+     * Une expression d'au moins deux opérandes est typée int par l'opérateur.
+     * @return expression
+     */
+    private String typedExpression() {
+        return expressionLength > 1 ? expression() : argument();
+    }
+
+    /**
+     * Construit une expression entière de {@code expressionLength} opérandes : variables visibles,
+     * constantes et, tant que le budget d'appels de la fonction n'est pas épuisé, appels.
+     * @return expression
+     */
+    private String expression() {
+        String[] operators = { " + ", " - ", " * " };
+        StringBuilder expression = new StringBuilder();
+        for (int i = 0; i < Math.max(1, expressionLength); i++) {
+            if (i > 0) expression.append(operators[random.nextInt(operators.length)]);
+            expression.append(operand());
+        }
+        return expression.toString();
+    }
+
+    /**
+     * Construit un opérande d'expression.
+     * @return variable, constante ou appel
+     */
+    private String operand() {
+        if (callsLeft > 0 && callableFunctions > 0 && random.nextInt(4) == 0) {
+            callsLeft--;
+            int f = random.nextInt(callableFunctions);
+            StringBuilder call = new StringBuilder("f").append(f).append('(');
+            for (int i = 0; i < arities[f]; i++) {
+                if (i > 0) call.append(", ");
+                call.append(argument());
+            }
+            return call.append(')').toString();
+        }
+        return variableOrConstant();
+    }
+
+    /**
+     * Choisit un argument d'appel : une variable déclarée int (le typage ne sait pas encore
+     * passer une variable auto à un paramètre int), ou une constante.
+     * @return argument
+     */
+    private String argument() {
+        String name = random.nextBoolean() && hasVariable(false) ? variable(false) : null;
+        return name != null && !autoVariables.contains(name) ? name : Integer.toString(random.nextInt(10));
+    }
+
+    /**
+     * Choisit une variable visible, ou une constante s'il n'y en a pas encore.
+     * @return variable ou constante
+     */
+    private String variableOrConstant() {
+        if (random.nextInt(3) == 0 || !hasVariable(false)) {
+            return Integer.toString(random.nextInt(100));
+        }
+        return variable(false);
+    }
+
+    /**
+     * Choisit une variable visible dans les scopes courants.
+     * @param assignable true pour exclure les paramètres, que la génération de code ne sait pas affecter
+     * @return nom de variable
+     */
+    private String variable(boolean assignable) {
+        int count = assignable ? 0 : parameters.size();
+        for (List<String> scope : visible) {
+            count += scope.size();
+        }
+        int index = random.nextInt(count);
+        if (!assignable) {
+            if (index < parameters.size()) return parameters.get(index);
+            index -= parameters.size();
+        }
+        for (List<String> scope : visible) {
+            if (index < scope.size()) return scope.get(index);
+            index -= scope.size();
+        }
+        throw new IllegalStateException("Aucune variable visible");
+    }
+
+    /**
+     * Teste si au moins une variable est visible.
+     * @param assignable true pour ne compter que les variables affectables
+     * @return boolean
+     */
+    private boolean hasVariable(boolean assignable) {
+        if (!assignable && !parameters.isEmpty()) return true;
+        for (List<String> scope : visible) {
+            if (!scope.isEmpty()) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Choisit le type d'un paramètre ou d'un retour de fonction.
+     * @return int ou auto
+     */
+    private String baseType() {
+        return random.nextInt(100) < autoDensity ? "auto" : "int";
+    }
+
+    /**
+     * Écrit l'indentation d'une ligne.
+     * @param level niveau d'indentation
+     */
+    private void indent(int level) {
+        for (int i = 0; i < level; i++) {
+            source.append("    ");
+        }
+    }
+
+    /**
+     * Écrit un corpus de programmes : le programme numéro i est généré avec le germe seed + i.
+     * @param directory répertoire de sortie
+     * @param files nombre de programmes
+     * @param seed germe du premier programme
+     * @param template générateur dont les réglages sont recopiés
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    public static void writeCorpus(Path directory, int files, long seed, Generator template) throws IOException {
+        Files.createDirectories(directory);
+        for (int i = 0; i < files; i++) {
+            Generator generator = new Generator(seed + i);
+            generator.copySettings(template);
+            Files.write(directory.resolve(String.format("w%05d.tcl", i)), generator.generate().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Recopie les réglages d'un autre générateur.
+     * @param other générateur de référence
+     */
+    private void copySettings(Generator other) {
+        functions = other.functions;
+        depth = other.depth;
+        variablesPerScope = other.variablesPerScope;
+        statementsPerBlock = other.statementsPerBlock;
+        expressionLength = other.expressionLength;
+        autoDensity = other.autoDensity;
+        fanOut = other.fanOut;
+    }
+
+    /**
+     * Génère un corpus :
+     * java Workload.Generator -o répertoire [-n fichiers] [--seed germe] [--functions n] [--depth n]
+     * [--vars n] [--statements n] [--expr n] [--auto pourcentage] [--fanout n]
+     * @param args arguments de la ligne de commande
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    public static void main(String[] args) throws IOException {
+        Generator settings = new Generator(0);
+        Path output = null;
+        int files = 1;
+        long seed = 0;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-o": output = Paths.get(args[++i]); break;
+                case "-n": files = Integer.parseInt(args[++i]); break;
+                case "--seed": seed = Long.parseLong(args[++i]); break;
+                case "--functions": settings.setFunctions(Integer.parseInt(args[++i])); break;
+                case "--depth": settings.setDepth(Integer.parseInt(args[++i])); break;
+                case "--vars": settings.setVariablesPerScope(Integer.parseInt(args[++i])); break;
+                case "--statements": settings.setStatementsPerBlock(Integer.parseInt(args[++i])); break;
+                case "--expr": settings.setExpressionLength(Integer.parseInt(args[++i])); break;
+                case "--auto": settings.setAutoDensity(Integer.parseInt(args[++i])); break;
+                case "--fanout": settings.setFanOut(Integer.parseInt(args[++i])); break;
+                default: throw new IllegalArgumentException("Option inconnue : " + args[i]);
+            }
+        }
+        if (output == null) {
+            Generator generator = new Generator(seed);
+            generator.copySettings(settings);
+            System.out.print(generator.generate());
+        } else {
+            writeCorpus(output, files, seed, settings);
+        }
+    }
+}